@@ -0,0 +1,76 @@
+package com.bank.aspect;
+
+import com.bank.service.MonitoringService;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Должен выполняться снаружи @Transactional, чтобы каждая попытка шла в новой транзакции
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyRetryAspect {
+
+    private final MonitoringService monitoringService;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public ConcurrencyRetryAspect(MonitoringService monitoringService,
+                                  @Value("${app.transfer.retry.max-attempts:5}") int maxAttempts,
+                                  @Value("${app.transfer.retry.initial-backoff-ms:5}") long initialBackoffMs,
+                                  @Value("${app.transfer.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this.monitoringService = monitoringService;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    @Around("@annotation(com.bank.aspect.RetryOnConcurrencyFailure)")
+    public Object retryOnConcurrencyFailure(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Внутри внешней транзакции повтор бесполезен - она уже помечена на откат
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = joinPoint.proceed();
+                monitoringService.recordTransferRetries(attempt - 1, false);
+                return result;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    monitoringService.recordTransferRetries(attempt - 1, true);
+                    log.warn("Giving up {} after {} attempts: {}",
+                            joinPoint.getSignature().toShortString(), attempt, e.getMessage());
+                    throw e;
+                }
+                log.debug("Concurrent update in {}, attempt {} of {}",
+                        joinPoint.getSignature().toShortString(), attempt, maxAttempts);
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, ConcurrencyFailureException cause) {
+        // Экспоненциальная задержка со случайным разбросом, чтобы конкурирующие попытки разошлись
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
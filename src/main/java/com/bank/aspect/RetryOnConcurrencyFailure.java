@@ -0,0 +1,12 @@
+package com.bank.aspect;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Повтор метода при конфликте версий/блокировок (см. ConcurrencyRetryAspect)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConcurrencyFailure {
+}
@@ -1,6 +1,7 @@
 package com.bank.config;
 
 import com.bank.interceptor.RateLimitInterceptor;
+import com.bank.service.RateLimitService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -16,6 +17,8 @@ public class AppConfig implements WebMvcConfigurer {
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(rateLimitInterceptor)
                 .addPathPatterns("/api/**")
-                .excludePathPatterns("/api/auth/validate"); // Исключаем validate из rate limiting
+                // validate не ограничиваем; login ограничивает AuthController - без двойного учета попытки,
+                // пакет переводов - CardController, по числу частей пакета
+                .excludePathPatterns("/api/auth/validate", "/api/auth/login", RateLimitService.BATCH_TRANSFER_ROUTE);
     }
 }
@@ -4,6 +4,7 @@ import com.bank.entity.Card;
 import com.bank.entity.User;
 import com.bank.repository.CardRepository;
 import com.bank.repository.UserRepository;
+import com.bank.service.CardNumberIndexService;
 import com.bank.service.EncryptionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +28,7 @@ public class DataInitializer implements CommandLineRunner {
     private final CardRepository cardRepository;
     private final PasswordEncoder passwordEncoder;
     private final EncryptionService encryptionService;
+    private final CardNumberIndexService cardNumberIndexService;
 
     @Override
     @Transactional
@@ -54,6 +56,8 @@ public class DataInitializer implements CommandLineRunner {
 
             Card adminCard = Card.builder()
                     .cardNumber(encryptedCardNumber)
+                    .cardLast4("3456")
+                    .cardNumberHash(cardNumberIndexService.hash("1234567890123456"))
                     .cardHolder("ADMIN USER")
                     .expiryDate(LocalDate.now().plusYears(2))
                     .balance(new BigDecimal("10000.00"))
@@ -79,6 +83,8 @@ public class DataInitializer implements CommandLineRunner {
             String encryptedCardNumber = encryptionService.encrypt("9876543210987654");
             Card userCard = Card.builder()
                     .cardNumber(encryptedCardNumber)
+                    .cardLast4("7654")
+                    .cardNumberHash(cardNumberIndexService.hash("9876543210987654"))
                     .cardHolder("USER ONE")
                     .expiryDate(LocalDate.now().plusYears(1))
                     .balance(new BigDecimal("5000.00"))
@@ -0,0 +1,24 @@
+package com.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Версионированные ключи шифрования. key - исходный ключ с идентификатором v1,
+// keys - последующие версии; новые значения шифруются ключом active-key-id
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.encryption")
+public class EncryptionProperties {
+
+    private String key = "bank-encryption-key-32-chars-long!";
+
+    private Map<String, String> keys = new LinkedHashMap<>();
+
+    private String activeKeyId = "v1";
+}
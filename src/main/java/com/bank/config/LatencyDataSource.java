@@ -0,0 +1,96 @@
+package com.bank.config;
+
+import com.bank.service.RequestLatency;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Фазы db.read / db.write для RequestLatency по типу SQL-оператора: SELECT - чтение,
+// SELECT ... FOR UPDATE, DML, commit и rollback - запись. Обертка над DataSource,
+// поэтому учитываются и запросы Hibernate (включая IDENTITY-вставки и bulk UPDATE вне flush),
+// и JdbcTemplate (пакетные вставки транзакций и проводок)
+public class LatencyDataSource extends DelegatingDataSource {
+
+    private static final Pattern FOR_UPDATE =
+            Pattern.compile("\\bfor\\s+(no\\s+key\\s+)?update\\b", Pattern.CASE_INSENSITIVE);
+
+    public LatencyDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    static RequestLatency.Phase phaseOf(String sql) {
+        String statement = sql.stripLeading();
+        int end = 0;
+        while (end < statement.length() && Character.isLetter(statement.charAt(end))) {
+            end++;
+        }
+        return switch (statement.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT", "WITH", "VALUES", "SHOW", "EXPLAIN" -> FOR_UPDATE.matcher(statement).find()
+                    ? RequestLatency.Phase.DB_WRITE
+                    : RequestLatency.Phase.DB_READ;
+            default -> RequestLatency.Phase.DB_WRITE;
+        };
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(LatencyDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "prepareStatement", "prepareCall" -> wrap((Statement) invoke(connection, method, args),
+                            method.getReturnType(), phaseOf((String) args[0]));
+                    case "createStatement" -> wrap((Statement) invoke(connection, method, args),
+                            method.getReturnType(), null);
+                    case "commit", "rollback" -> invokeIn(RequestLatency.Phase.DB_WRITE, connection, method, args);
+                    default -> invoke(connection, method, args);
+                });
+    }
+
+    // phase == null - Statement без SQL при создании: тип берется из execute*(sql), addBatch(sql) - запись
+    private static Statement wrap(Statement statement, Class<?> type, RequestLatency.Phase phase) {
+        return (Statement) Proxy.newProxyInstance(LatencyDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        return invoke(statement, method, args);
+                    }
+                    RequestLatency.Phase statementPhase = phase;
+                    if (args != null && args.length > 0 && args[0] instanceof String sql) {
+                        statementPhase = phaseOf(sql);
+                    } else if (statementPhase == null) {
+                        statementPhase = RequestLatency.Phase.DB_WRITE;
+                    }
+                    return invokeIn(statementPhase, statement, method, args);
+                });
+    }
+
+    private static Object invokeIn(RequestLatency.Phase phase, Object target, Method method, Object[] args)
+            throws Throwable {
+        try (RequestLatency.Scope ignored = RequestLatency.enter(phase)) {
+            return invoke(target, method, args);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
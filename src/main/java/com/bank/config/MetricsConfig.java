@@ -0,0 +1,38 @@
+package com.bank.config;
+
+import com.bank.interceptor.RequestLatencyFilter;
+import com.bank.service.MonitoringService;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class MetricsConfig {
+
+    // Раньше цепочки Spring Security: в замер запроса входит фаза auth
+    @Bean
+    public FilterRegistrationBean<RequestLatencyFilter> requestLatencyFilter(MonitoringService monitoringService) {
+        FilterRegistrationBean<RequestLatencyFilter> registration =
+                new FilterRegistrationBean<>(new RequestLatencyFilter(monitoringService));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    // Оборачивает DataSource до того, как его получат JPA, JdbcTemplate и Liquibase.
+    // static - чтобы постпроцессор не тянул за собой раннее создание MonitoringService
+    @Bean
+    public static BeanPostProcessor latencyDataSourceWrapper() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof LatencyDataSource)
+                        ? new LatencyDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+}
@@ -1,15 +0,0 @@
-package com.bank.config;
-
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-@Configuration
-public class RateLimitConfig {
-
-    @Bean
-    public CacheManager rateLimitCacheManager() {
-        return new ConcurrentMapCacheManager("rateLimit");
-    }
-}
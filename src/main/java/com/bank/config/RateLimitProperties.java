@@ -0,0 +1,49 @@
+package com.bank.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Политики лимитов: policies - именованные лимиты, routes - шаблон маршрута -> политика
+// (первое совпадение, иначе default-policy), principals - замены политик для отдельных
+// пользователей, например интеграционных клиентов с повышенной пропускной способностью
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private String defaultPolicy = "api";
+
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    private List<Route> routes = new ArrayList<>();
+
+    // Имя пользователя -> (политика маршрута -> политика для этого пользователя)
+    private Map<String, Map<String, String>> principals = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+
+        private int capacity;
+
+        private Duration period;
+    }
+
+    @Getter
+    @Setter
+    public static class Route {
+
+        private String pattern;
+
+        private String policy;
+    }
+}
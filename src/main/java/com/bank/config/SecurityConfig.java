@@ -1,10 +1,16 @@
 package com.bank.config;
 
+import com.bank.security.BCryptCostCalibrator;
+import com.bank.security.BoundedPasswordEncoder;
+import com.bank.security.CachedUserDetailsService;
 import com.bank.security.JwtAuthenticationFilter;
 import com.bank.security.JwtAuthenticationEntryPoint;
 import com.bank.security.JwtTokenProvider;
 import com.bank.security.CustomUserDetailsService;
+import com.bank.service.MonitoringService;
+import com.bank.service.TokenRevocationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -29,17 +35,21 @@ public class SecurityConfig {
     private final JwtAuthenticationEntryPoint unauthorizedHandler;
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final CachedUserDetailsService cachedUserDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    private final MonitoringService monitoringService;
 
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
-        return new JwtAuthenticationFilter(tokenProvider, userDetailsService);
+        return new JwtAuthenticationFilter(tokenProvider, cachedUserDetailsService, tokenRevocationService);
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -48,24 +58,42 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    // threads = 0 - половина доступных ядер; cost = 0 - подбор стоимости BCrypt под узел при старте.
+    // Хеши с меньшей стоимостью перезаписываются при следующем успешном входе (CustomUserDetailsService.updatePassword)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.security.password-hashing.threads:0}") int threads,
+                                           @Value("${app.security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${app.security.password-hashing.timeout-ms:5000}") long timeoutMillis,
+                                           @Value("${app.security.password-hashing.cost:0}") int cost,
+                                           @Value("${app.security.password-hashing.target-ms:250}") long targetMillis,
+                                           @Value("${app.security.password-hashing.min-cost:10}") int minCost,
+                                           @Value("${app.security.password-hashing.max-cost:14}") int maxCost) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int strength = cost > 0 ? cost : BCryptCostCalibrator.calibrate(targetMillis, minCost, maxCost);
+        monitoringService.recordPasswordHashingCost(strength);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), monitoringService,
+                poolSize, queueCapacity, timeoutMillis);
     }
 
     @Bean
     @Profile("!test")
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        return buildSecurityFilterChain(http, true);
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   DaoAuthenticationProvider authenticationProvider,
+                                                   @Value("${management.server.port:-1}") int managementPort) throws Exception {
+        return buildSecurityFilterChain(http, true, authenticationProvider, managementPort);
     }
 
     @Bean
     @Profile("test")
-    public SecurityFilterChain testSecurityFilterChain(HttpSecurity http) throws Exception {
-        return buildSecurityFilterChain(http, false);
+    public SecurityFilterChain testSecurityFilterChain(HttpSecurity http,
+                                                       DaoAuthenticationProvider authenticationProvider,
+                                                       @Value("${management.server.port:-1}") int managementPort) throws Exception {
+        return buildSecurityFilterChain(http, false, authenticationProvider, managementPort);
     }
 
-    private SecurityFilterChain buildSecurityFilterChain(HttpSecurity http, boolean enableCsrf) throws Exception {
+    private SecurityFilterChain buildSecurityFilterChain(HttpSecurity http, boolean enableCsrf,
+                                                         DaoAuthenticationProvider authenticationProvider,
+                                                         int managementPort) throws Exception {
         if (!enableCsrf) {
             http.csrf(csrf -> csrf.disable());
         } else {
@@ -83,6 +111,10 @@ public class SecurityConfig {
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/actuator/health").permitAll()
+                        // Метрики для Prometheus без токена - только на отдельном порту management.server.port,
+                        // который не публикуется наружу; без отдельного порта выгрузка требует аутентификации
+                        .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort
+                                && "/actuator/prometheus".equals(request.getRequestURI())).permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 );
@@ -90,7 +122,7 @@ public class SecurityConfig {
         // Для H2 console
         http.headers(headers -> headers.frameOptions(frame -> frame.disable()));
 
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -1,11 +1,18 @@
 package com.bank.controller;
 
+import com.bank.dto.CardLookupRequest;
 import com.bank.dto.CardResponseDTO;
 import com.bank.dto.CreateCardRequest;
+import com.bank.dto.KeyRotationStatus;
+import com.bank.dto.LedgerReconciliationReport;
 import com.bank.entity.Card;
 import com.bank.entity.User;
+import com.bank.service.CardNumberIndexService;
+import com.bank.service.CardReEncryptionService;
 import com.bank.service.CardService;
 import com.bank.service.EncryptionService;
+import com.bank.service.HotCardService;
+import com.bank.service.LedgerService;
 import com.bank.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +23,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/admin")
 @PreAuthorize("hasRole('ADMIN')")
@@ -25,6 +35,10 @@ public class AdminController {
     private final CardService cardService;
     private final UserService userService;
     private final EncryptionService encryptionService;
+    private final CardNumberIndexService cardNumberIndexService;
+    private final LedgerService ledgerService;
+    private final HotCardService hotCardService;
+    private final CardReEncryptionService cardReEncryptionService;
 
     @PostMapping("/cards")
     public ResponseEntity<CardResponseDTO> createCard(@Valid @RequestBody CreateCardRequest request) {
@@ -35,6 +49,8 @@ public class AdminController {
 
         Card card = Card.builder()
                 .cardNumber(encryptedCardNumber)
+                .cardLast4(Card.lastFourDigits(request.getCardNumber()))
+                .cardNumberHash(cardNumberIndexService.hash(request.getCardNumber()))
                 .cardHolder(request.getCardHolder().toUpperCase())
                 .expiryDate(request.getExpiryDate())
                 .balance(request.getInitialBalance())
@@ -44,10 +60,7 @@ public class AdminController {
 
         Card savedCard = cardService.createCard(card);
 
-        CardResponseDTO response = CardResponseDTO.fromEntity(
-                savedCard,
-                cardService.getMaskedCardNumber(savedCard.getCardNumber())
-        );
+        CardResponseDTO response = CardResponseDTO.fromEntity(savedCard);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
@@ -59,10 +72,20 @@ public class AdminController {
 
         Card card = cardService.updateCardStatus(cardId, status);
 
-        CardResponseDTO response = CardResponseDTO.fromEntity(
-                card,
-                cardService.getMaskedCardNumber(card.getCardNumber())
-        );
+        CardResponseDTO response = CardResponseDTO.fromEntity(card, cardService.getCardBalance(card));
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Режим "горячей" карты для карт с большим потоком зачислений; slots=0 отключает режим
+    @PutMapping("/cards/{cardId}/balance-slots")
+    public ResponseEntity<CardResponseDTO> updateCardBalanceSlots(
+            @PathVariable Long cardId,
+            @RequestParam int slots) {
+
+        Card card = hotCardService.setBalanceSlots(cardId, slots);
+
+        CardResponseDTO response = CardResponseDTO.fromEntity(card, cardService.getCardBalance(card));
 
         return ResponseEntity.ok(response);
     }
@@ -74,22 +97,55 @@ public class AdminController {
 
         Page<Card> cards = cardService.getAllCards(PageRequest.of(page, size));
 
-        Page<CardResponseDTO> response = cards.map(card ->
-                CardResponseDTO.fromEntity(
-                        card,
-                        cardService.getMaskedCardNumber(card.getCardNumber())
-                )
-        );
+        Map<Long, BigDecimal> balances = cardService.getCardBalances(cards.getContent());
+        Page<CardResponseDTO> response =
+                cards.map(card -> CardResponseDTO.fromEntity(card, balances.get(card.getId())));
 
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/cards/lookup")
+    public ResponseEntity<CardResponseDTO> lookupCard(@Valid @RequestBody CardLookupRequest request) {
+        Card card = cardService.getCardByNumberHash(cardNumberIndexService.hash(request.getCardNumber()));
+
+        return ResponseEntity.ok(CardResponseDTO.fromEntity(card, cardService.getCardBalance(card)));
+    }
+
     @DeleteMapping("/cards/{cardId}")
     public ResponseEntity<?> deleteCard(@PathVariable Long cardId) {
         cardService.deleteCard(cardId);
         return ResponseEntity.ok().body("Card deleted successfully");
     }
 
+    @PostMapping("/ledger/reconciliation")
+    public ResponseEntity<LedgerReconciliationReport> reconcileLedger(
+            @RequestParam(defaultValue = "true") boolean full) {
+
+        return ResponseEntity.ok(ledgerService.reconcile(full));
+    }
+
+    // Перешифровка номеров карт активным ключом после ротации
+    @PostMapping("/encryption/rotation")
+    public ResponseEntity<KeyRotationStatus> startKeyRotation() {
+        return ResponseEntity.accepted().body(cardReEncryptionService.start());
+    }
+
+    @GetMapping("/encryption/rotation")
+    public ResponseEntity<KeyRotationStatus> getKeyRotationStatus() {
+        return ResponseEntity.ok(cardReEncryptionService.getStatus());
+    }
+
+    @PutMapping("/encryption/rotation/throttle")
+    public ResponseEntity<KeyRotationStatus> throttleKeyRotation(@RequestParam int maxRowsPerSecond) {
+        return ResponseEntity.ok(cardReEncryptionService.setMaxRowsPerSecond(maxRowsPerSecond));
+    }
+
+    @DeleteMapping("/encryption/rotation")
+    public ResponseEntity<KeyRotationStatus> stopKeyRotation() {
+        cardReEncryptionService.stop();
+        return ResponseEntity.ok(cardReEncryptionService.getStatus());
+    }
+
     @GetMapping("/users")
     public ResponseEntity<Page<User>> getAllUsers(
             @RequestParam(defaultValue = "0") int page,
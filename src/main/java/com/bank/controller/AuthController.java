@@ -2,10 +2,19 @@ package com.bank.controller;
 
 import com.bank.dto.AuthRequest;
 import com.bank.dto.AuthResponse;
+import com.bank.dto.RefreshTokenRequest;
+import com.bank.entity.User;
+import com.bank.exception.PasswordHashingBusyException;
+import com.bank.interceptor.RateLimitHeaders;
 import com.bank.security.JwtTokenProvider;
 import com.bank.service.AuditService;
 import com.bank.service.MonitoringService;
 import com.bank.service.RateLimitService;
+import com.bank.service.RateLimitStore;
+import com.bank.service.RefreshTokenService;
+import com.bank.service.RequestLatency;
+import com.bank.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +27,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Optional;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/auth")
@@ -29,35 +40,41 @@ public class AuthController {
     private final MonitoringService monitoringService;
     private final AuditService auditService;
     private final RateLimitService rateLimitService;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenService refreshTokenService;
 
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody AuthRequest loginRequest,
                                               HttpServletRequest request) {
         String clientIp = getClientIp(request);
-        String rateLimitKey = clientIp + "_/api/auth/login";
+        String rateLimitKey = "ip:" + clientIp + "_/api/auth/login";
 
-        // Check rate limiting
-        if (rateLimitService.isRateLimited(rateLimitKey, RateLimitService.RateLimitType.LOGIN_ATTEMPT)) {
+        // Check rate limiting: каждая попытка входа расходует токен сразу, до проверки пароля
+        RateLimitStore.Decision rateLimit = rateLimitService.tryAcquire(rateLimitKey, RateLimitService.LOGIN_POLICY);
+        if (!rateLimit.allowed()) {
             auditService.logSecurityEvent("RATE_LIMIT_EXCEEDED",
                     "Login rate limit exceeded for IP: " + clientIp, false, request);
-            return ResponseEntity.status(429).body("Rate limit exceeded. Please try again later.");
+            return ResponseEntity.status(429)
+                    .headers(RateLimitHeaders.of(rateLimit))
+                    .body("Rate limit exceeded. Please try again later.");
         }
 
         try {
             log.debug("Attempting authentication for user: {}", loginRequest.getUsername());
 
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginRequest.getUsername(),
-                            loginRequest.getPassword()
-                    )
-            );
+            Authentication authentication;
+            try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.AUTH)) {
+                authentication = authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(
+                                loginRequest.getUsername(),
+                                loginRequest.getPassword()
+                        )
+                );
+            }
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = tokenProvider.generateToken(authentication);
-
-            // Record successful request
-            rateLimitService.recordRequest(rateLimitKey, RateLimitService.RateLimitType.LOGIN_ATTEMPT);
+            String refreshToken = refreshTokenService.issue(authentication.getName());
 
             // Логируем успешную аутентификацию
             auditService.logSecurityEvent("LOGIN_SUCCESS",
@@ -65,12 +82,9 @@ public class AuthController {
             monitoringService.recordSuccessfulLogin(loginRequest.getUsername());
 
             log.info("User {} successfully authenticated", loginRequest.getUsername());
-            return ResponseEntity.ok(new AuthResponse(jwt, "Bearer"));
+            return ResponseEntity.ok(new AuthResponse(jwt, "Bearer", refreshToken));
 
         } catch (BadCredentialsException e) {
-            // Record failed request
-            rateLimitService.recordRequest(rateLimitKey, RateLimitService.RateLimitType.LOGIN_ATTEMPT);
-
             // Логируем неудачную попытку входа
             log.warn("Authentication failed for user: {} - Invalid credentials", loginRequest.getUsername());
             auditService.logSecurityEvent("LOGIN_FAILED",
@@ -78,10 +92,11 @@ public class AuthController {
             monitoringService.recordFailedLogin(loginRequest.getUsername());
 
             return ResponseEntity.status(401).body("Invalid credentials");
+        } catch (PasswordHashingBusyException e) {
+            // Пул BCrypt перегружен: попытка не засчитывается как неудачный вход
+            log.warn("Login rejected for user: {} - {}", loginRequest.getUsername(), e.getMessage());
+            throw e;
         } catch (Exception e) {
-            // Record failed request
-            rateLimitService.recordRequest(rateLimitKey, RateLimitService.RateLimitType.LOGIN_ATTEMPT);
-
             log.error("Unexpected error during authentication for user: {}", loginRequest.getUsername(), e);
             auditService.logSecurityEvent("LOGIN_ERROR",
                     "Unexpected error: " + e.getMessage(), false, request);
@@ -100,7 +115,7 @@ public class AuthController {
             }
 
             String jwt = token.substring(7);
-            if (tokenProvider.validateToken(jwt)) {
+            if (tokenProvider.validateToken(jwt) && !isRevoked(jwt)) {
                 auditService.logSecurityEvent("TOKEN_VALIDATION_SUCCESS",
                         "Token is valid", true, request);
                 return ResponseEntity.ok().body("Token is valid");
@@ -117,6 +132,50 @@ public class AuthController {
         }
     }
 
+    // Новая пара токенов по refresh-токену без повторной проверки пароля
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshTokenRequest refreshRequest,
+                                                HttpServletRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        User user = rotation.getUser();
+        String jwt = tokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        auditService.logSecurityEvent("TOKEN_REFRESHED", "Access token refreshed", true, request);
+        return ResponseEntity.ok(new AuthResponse(jwt, "Bearer", rotation.getRefreshToken()));
+    }
+
+    // Отзыв текущего токена: до истечения срока он больше не принимается ни одним узлом.
+    // Переданный refresh-токен гасится вместе со всей цепочкой, иначе /refresh выдал бы новый access-токен
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String token,
+                                    @RequestBody(required = false) RefreshTokenRequest refreshRequest,
+                                    HttpServletRequest request) {
+        if (token == null || !token.startsWith("Bearer ")) {
+            return ResponseEntity.badRequest().body("Invalid token");
+        }
+
+        Optional<Claims> claims = tokenProvider.parseValidatedClaims(token.substring(7));
+        if (claims.isEmpty()) {
+            return ResponseEntity.badRequest().body("Invalid token");
+        }
+
+        tokenRevocationService.revoke(claims.get().getId(), claims.get().getSubject(),
+                claims.get().getExpiration());
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null
+                && !refreshRequest.getRefreshToken().isBlank()) {
+            refreshTokenService.revokeFamily(refreshRequest.getRefreshToken(), claims.get().getSubject());
+        }
+        auditService.logSecurityEvent("TOKEN_REVOKED", "Token revoked on logout", true, request);
+        return ResponseEntity.ok().body("Logged out");
+    }
+
+    private boolean isRevoked(String jwt) {
+        return tokenProvider.parseValidatedClaims(jwt)
+                .map(claims -> tokenRevocationService.isRevoked(claims.getId()))
+                .orElse(false);
+    }
+
     private String getClientIp(HttpServletRequest request) {
         String xfHeader = request.getHeader("X-Forwarded-For");
         if (xfHeader != null) {
@@ -1,10 +1,18 @@
 package com.bank.controller;
 
+import com.bank.dto.BatchTransferRequest;
+import com.bank.dto.BatchTransferResponse;
 import com.bank.dto.CardResponseDTO;
 import com.bank.dto.TransferRequest;
 import com.bank.entity.Card;
 import com.bank.entity.User;
+import com.bank.exception.DuplicateIdempotencyKeyException;
+import com.bank.interceptor.RateLimitHeaders;
 import com.bank.service.CardService;
+import com.bank.service.GroupCommitTransferService;
+import com.bank.service.IdempotencyService;
+import com.bank.service.RateLimitService;
+import com.bank.service.RateLimitStore;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -15,13 +23,24 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/cards")
 @RequiredArgsConstructor
 public class CardController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAY_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     private final CardService cardService;
+    private final IdempotencyService idempotencyService;
+    private final GroupCommitTransferService groupCommitTransferService;
+    private final RateLimitService rateLimitService;
 
     @GetMapping
     public ResponseEntity<Page<CardResponseDTO>> getUserCards(
@@ -32,12 +51,9 @@ public class CardController {
 
         Page<Card> cards = cardService.getUserCards(user, PageRequest.of(page, size), search);
 
-        Page<CardResponseDTO> response = cards.map(card ->
-                CardResponseDTO.fromEntity(
-                        card,
-                        cardService.getMaskedCardNumber(card.getCardNumber())
-                )
-        );
+        Map<Long, BigDecimal> balances = cardService.getCardBalances(cards.getContent());
+        Page<CardResponseDTO> response =
+                cards.map(card -> CardResponseDTO.fromEntity(card, balances.get(card.getId())));
 
         return ResponseEntity.ok(response);
     }
@@ -48,10 +64,7 @@ public class CardController {
             @PathVariable Long cardId) {
 
         Card card = cardService.getCardById(cardId, user);
-        CardResponseDTO response = CardResponseDTO.fromEntity(
-                card,
-                cardService.getMaskedCardNumber(card.getCardNumber())
-        );
+        CardResponseDTO response = CardResponseDTO.fromEntity(card, cardService.getCardBalance(card));
 
         return ResponseEntity.ok(response);
     }
@@ -68,12 +81,92 @@ public class CardController {
     @PostMapping("/transfer")
     public ResponseEntity<?> transferBetweenCards(
             @AuthenticationPrincipal User user,
+            Principal principal,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Valid @RequestBody TransferRequest request) {
 
-        cardService.transferBetweenCards(user, request.getFromCardId(),
+        if (idempotencyKey == null) {
+            cardService.transferBetweenCards(user, request.getFromCardId(),
+                    request.getToCardId(), request.getAmount());
+            return ResponseEntity.ok().body(CardService.TRANSFER_COMPLETED_MESSAGE);
+        }
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body("Idempotency-Key must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        String fingerprint = IdempotencyService.transferFingerprint(request.getFromCardId(),
                 request.getToCardId(), request.getAmount());
 
-        return ResponseEntity.ok().body("Transfer completed successfully");
+        // Повтор уже обработанного ключа: ответ из памяти, без CardService и блокировок
+        Optional<IdempotencyService.StoredResponse> cached =
+                idempotencyService.findCached(principal.getName(), idempotencyKey, fingerprint);
+        if (cached.isPresent()) {
+            return replay(cached.get());
+        }
+
+        try {
+            cardService.transferBetweenCards(user, request.getFromCardId(),
+                    request.getToCardId(), request.getAmount(), idempotencyKey);
+        } catch (DuplicateIdempotencyKeyException e) {
+            return idempotencyService.findStored(principal.getName(), idempotencyKey, fingerprint)
+                    .map(this::replay)
+                    .orElseThrow(() -> e);
+        }
+
+        idempotencyService.remember(principal.getName(), idempotencyKey,
+                new IdempotencyService.StoredResponse(fingerprint, HttpStatus.OK.value(),
+                        CardService.TRANSFER_COMPLETED_MESSAGE));
+        return ResponseEntity.ok().body(CardService.TRANSFER_COMPLETED_MESSAGE);
+    }
+
+    private ResponseEntity<?> replay(IdempotencyService.StoredResponse response) {
+        return ResponseEntity.status(response.getStatus())
+                .header(IDEMPOTENT_REPLAY_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    // Лимит считается здесь, а не в RateLimitInterceptor: по разрешению на каждую часть пакета,
+    // чтобы пакет не обходил дневной лимит переводов
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<?> transferBatch(
+            @AuthenticationPrincipal User user,
+            Principal principal,
+            @Valid @RequestBody BatchTransferRequest request) {
+
+        // Пакет больше емкости лимита не пройдет и после ожидания: 413 вместо 429 с Retry-After
+        int capacity = rateLimitService.routeCapacity(RateLimitService.BATCH_TRANSFER_ROUTE, principal.getName());
+        if (request.getLegs().size() > capacity) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Batch of " + request.getLegs().size() + " legs exceeds the transfer limit of "
+                            + capacity + " transfers per period. Split the batch.");
+        }
+
+        RateLimitStore.Decision rateLimit = rateLimitService.tryAcquireRoute(RateLimitService.userSubject(principal),
+                RateLimitService.BATCH_TRANSFER_ROUTE, principal.getName(), request.getLegs().size());
+        if (!rateLimit.allowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(RateLimitHeaders.of(rateLimit))
+                    .body("Rate limit exceeded. Please try again later.");
+        }
+
+        BatchTransferResponse response = cardService.transferBatch(user, request.getLegs(), request.isAtomic());
+        return ResponseEntity.ok()
+                .headers(RateLimitHeaders.of(rateLimit))
+                .body(response);
+    }
+
+    // Перевод через очередь группового коммита: ответ приходит после коммита группы
+    @PostMapping("/transfers/async")
+    public CompletableFuture<ResponseEntity<BatchTransferResponse.LegResult>> transferAsync(
+            @AuthenticationPrincipal User user,
+            @Valid @RequestBody TransferRequest request) {
+
+        return groupCommitTransferService.submit(user, request)
+                .thenApply(result -> result.getStatus() == BatchTransferResponse.LegStatus.SUCCESS
+                        ? ResponseEntity.ok(result)
+                        : ResponseEntity.unprocessableEntity().body(result));
     }
 
     @GetMapping("/{cardId}/balance")
@@ -81,7 +174,6 @@ public class CardController {
             @AuthenticationPrincipal User user,
             @PathVariable Long cardId) {
 
-        Card card = cardService.getCardById(cardId, user);
-        return ResponseEntity.ok(card.getBalance());
+        return ResponseEntity.ok(cardService.getCardBalance(cardId, user));
     }
 }
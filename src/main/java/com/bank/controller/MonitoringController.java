@@ -9,7 +9,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/api/admin/monitoring")
@@ -21,10 +20,13 @@ public class MonitoringController {
 
     @GetMapping("/metrics")
     public ResponseEntity<Map<String, Long>> getMetrics() {
-        ConcurrentHashMap<String, Long> metrics = new ConcurrentHashMap<>();
-        monitoringService.getAllMetrics().forEach((key, value) -> metrics.put(key, value.get()));
+        return ResponseEntity.ok(monitoringService.getAllMetrics());
+    }
 
-        return ResponseEntity.ok(metrics);
+    // p50/p90/p99/p99.9 по операциям и фазам; те же таймеры request.latency есть в /actuator/prometheus
+    @GetMapping("/latency")
+    public ResponseEntity<Map<String, Map<String, Map<String, Double>>>> getLatency() {
+        return ResponseEntity.ok(monitoringService.getLatencySnapshot());
     }
 
     @GetMapping("/health")
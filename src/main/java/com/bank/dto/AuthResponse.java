@@ -8,4 +8,5 @@ import lombok.Getter;
 public class AuthResponse {
     private String accessToken;
     private String tokenType;
+    private String refreshToken;
 }
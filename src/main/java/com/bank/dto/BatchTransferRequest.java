@@ -0,0 +1,20 @@
+package com.bank.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class BatchTransferRequest {
+    @NotEmpty(message = "At least one transfer leg is required")
+    @Size(max = 1000, message = "A batch can contain at most 1000 legs")
+    private List<@Valid TransferRequest> legs;
+
+    // true - при ошибке хотя бы одной части откатывается весь пакет
+    private boolean atomic;
+}
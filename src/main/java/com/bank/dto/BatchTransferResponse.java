@@ -0,0 +1,31 @@
+package com.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class BatchTransferResponse {
+    private boolean committed;
+    private int succeeded;
+    private int failed;
+    private List<LegResult> results;
+
+    public enum LegStatus {
+        SUCCESS, FAILED, ROLLED_BACK
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class LegResult {
+        private int index;
+        private Long fromCardId;
+        private Long toCardId;
+        private BigDecimal amount;
+        private LegStatus status;
+        private String error;
+    }
+}
@@ -0,0 +1,15 @@
+package com.bank.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Getter;
+import lombok.Setter;
+
+// Номер карты передается в теле запроса, чтобы не попадать в URL и журналы доступа
+@Getter
+@Setter
+public class CardLookupRequest {
+    @NotBlank(message = "Card number is required")
+    @Pattern(regexp = "\\d{16}", message = "Card number must be 16 digits")
+    private String cardNumber;
+}
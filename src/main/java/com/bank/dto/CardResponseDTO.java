@@ -21,16 +21,27 @@ public class CardResponseDTO {
     private BigDecimal balance;
     private Card.CardStatus status;
     private String userUsername;
+    private int balanceSlots;
 
-    public static CardResponseDTO fromEntity(Card card, String maskedCardNumber) {
+    // Только для новой карты: у нее еще нет записей журнала и слотов, Card.balance - полный баланс
+    public static CardResponseDTO fromEntity(Card card) {
+        return fromEntity(card, card.getBalance());
+    }
+
+    // balance - полный баланс из CardService.getCardBalance(s), как в GET /api/cards/{id}/balance.
+    // Маска строится из card_last4 без расшифровки номера
+    public static CardResponseDTO fromEntity(Card card, BigDecimal balance) {
         return CardResponseDTO.builder()
                 .id(card.getId())
-                .cardNumber(maskedCardNumber)
+                .cardNumber(card.getCardLast4() != null
+                        ? "**** **** **** " + card.getCardLast4()
+                        : "**** **** **** ****")
                 .cardHolder(card.getCardHolder())
                 .expiryDate(card.getExpiryDate())
-                .balance(card.getBalance())
+                .balance(balance)
                 .status(card.getStatus())
                 .userUsername(card.getUser() != null ? card.getUser().getUsername() : null)
+                .balanceSlots(card.getBalanceSlots() != null ? card.getBalanceSlots() : 0)
                 .build();
     }
 }
@@ -0,0 +1,24 @@
+package com.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@AllArgsConstructor
+public class KeyRotationStatus {
+    private String activeKeyId;
+    private boolean running;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long lastCardId;
+    private long reEncrypted;
+    private long conflicts;
+    private long failed;
+    private double rowsPerSecond;
+    // 0 - без ограничения
+    private int maxRowsPerSecond;
+    // Карты, еще зашифрованные не активным ключом; старый ключ можно убрать, когда здесь 0
+    private long remaining;
+}
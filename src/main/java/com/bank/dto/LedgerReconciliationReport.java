@@ -0,0 +1,30 @@
+package com.bank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class LedgerReconciliationReport {
+    private LocalDateTime checkedAt;
+    private int checkedCards;
+    private List<Mismatch> mismatches;
+
+    public boolean isConsistent() {
+        return mismatches.isEmpty();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Mismatch {
+        private Long cardId;
+        // Баланс с несвернутыми записями журнала и слотами
+        private BigDecimal balance;
+        // opening_balance карты плюс ее переводы из transactions
+        private BigDecimal expectedBalance;
+    }
+}
@@ -0,0 +1,13 @@
+package com.bank.dto;
+
+import com.bank.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Перевод, принятый в очередь группового коммита, вместе с его инициатором
+@Getter
+@AllArgsConstructor
+public class TransferCommand {
+    private User user;
+    private TransferRequest request;
+}
@@ -0,0 +1,62 @@
+package com.bank.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Table(name = "balance_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "card")
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "card_id", nullable = false)
+    private Card card;
+
+    // Первая и последняя запись снимка; сами записи отмечены его snapshot_id, и в интервал
+    // могут попасть записи других снимков, закоммиченные после свертки
+    @Column(name = "from_entry_id", nullable = false)
+    private Long fromEntryId;
+
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+
+    @Column(name = "entry_count", nullable = false)
+    private Long entryCount;
+
+    @Column(name = "opening_balance", nullable = false, precision = 15, scale = 2)
+    private BigDecimal openingBalance;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal balance;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BalanceSnapshot that = (BalanceSnapshot) o;
+        return Objects.equals(id, that.id) &&
+                Objects.equals(lastEntryId, that.lastEntryId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, lastEntryId);
+    }
+}
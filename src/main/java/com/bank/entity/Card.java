@@ -25,6 +25,14 @@ public class Card {
     @Column(name = "card_number", nullable = false, length = 255)
     private String cardNumber;
 
+    // Последние 4 цифры в открытом виде: списки карт не расшифровывают номер
+    @Column(name = "card_last4", length = 4)
+    private String cardLast4;
+
+    // HMAC-SHA256 номера карты: поиск и проверка дубликатов без расшифровки, шифртекст недетерминирован
+    @Column(name = "card_number_hash", unique = true, length = 64)
+    private String cardNumberHash;
+
     @Column(name = "card_holder", nullable = false, length = 100)
     private String cardHolder;
 
@@ -34,6 +42,10 @@ public class Card {
     @Column(nullable = false, precision = 15, scale = 2)
     private BigDecimal balance;
 
+    // Баланс при создании: от него сверка пересчитывает баланс по строкам transactions
+    @Column(name = "opening_balance", nullable = false, updatable = false, precision = 15, scale = 2)
+    private BigDecimal openingBalance;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private CardStatus status;
@@ -50,6 +62,15 @@ public class Card {
     @Column(name = "block_requested")
     private Boolean blockRequested = false;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Число слотов баланса "горячей" карты; 0 - обычная карта
+    @Builder.Default
+    @Column(name = "balance_slots", nullable = false)
+    private Integer balanceSlots = 0;
+
     public enum CardStatus {
         ACTIVE, BLOCKED, EXPIRED
     }
@@ -62,6 +83,21 @@ public class Card {
         return expiryDate.isBefore(LocalDate.now());
     }
 
+    public static String lastFourDigits(String cardNumber) {
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+
+    @PrePersist
+    void initOpeningBalance() {
+        if (openingBalance == null) {
+            openingBalance = balance;
+        }
+    }
+
+    public boolean isHot() {
+        return balanceSlots != null && balanceSlots > 0;
+    }
+
     public boolean isBlocked() {
         return status == CardStatus.BLOCKED;
     }
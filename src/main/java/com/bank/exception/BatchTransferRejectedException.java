@@ -0,0 +1,14 @@
+package com.bank.exception;
+
+import com.bank.dto.BatchTransferResponse;
+import lombok.Getter;
+
+@Getter
+public class BatchTransferRejectedException extends RuntimeException {
+    private final BatchTransferResponse response;
+
+    public BatchTransferRejectedException(String message, BatchTransferResponse response) {
+        super(message);
+        this.response = response;
+    }
+}
@@ -0,0 +1,7 @@
+package com.bank.exception;
+
+public class DuplicateIdempotencyKeyException extends RuntimeException {
+    public DuplicateIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
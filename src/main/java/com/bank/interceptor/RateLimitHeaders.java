@@ -0,0 +1,27 @@
+package com.bank.interceptor;
+
+import com.bank.service.RateLimitStore;
+import org.springframework.http.HttpHeaders;
+
+// Заголовки решения лимита (draft-ietf-httpapi-ratelimit-headers) и Retry-After для 429:
+// клиент видит, сколько осталось и когда повторять, вместо немедленных повторов
+public final class RateLimitHeaders {
+
+    public static final String LIMIT = "RateLimit-Limit";
+    public static final String REMAINING = "RateLimit-Remaining";
+    public static final String RESET = "RateLimit-Reset";
+
+    private RateLimitHeaders() {
+    }
+
+    public static HttpHeaders of(RateLimitStore.Decision decision) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(LIMIT, String.valueOf(decision.limit()));
+        headers.set(REMAINING, String.valueOf(decision.remaining()));
+        headers.set(RESET, String.valueOf(decision.resetSeconds()));
+        if (!decision.allowed()) {
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+        }
+        return headers;
+    }
+}
@@ -1,44 +1,61 @@
 package com.bank.interceptor;
 
 import com.bank.service.RateLimitService;
+import com.bank.service.RateLimitStore;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
 @Component
 @RequiredArgsConstructor
 public class RateLimitInterceptor implements HandlerInterceptor {
 
+    private static final String UNMATCHED_ROUTE = "unmatched";
+
     private final RateLimitService rateLimitService;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-        String clientIp = getClientIp(request);
-        String endpoint = request.getRequestURI();
+        String endpoint = getRoutePattern(request);
+        Authentication authentication = getAuthentication();
 
-        // Применяем разные лимиты для разных endpoint-ов
-        RateLimitService.RateLimitType rateLimitType = getRateLimitType(endpoint);
+        // Политика по шаблону маршрута и пользователю; лимит - на пользователя, для анонимных - на IP
+        String subject = authentication != null
+                ? RateLimitService.userSubject(authentication)
+                : "ip:" + getClientIp(request);
 
-        if (rateLimitService.isRateLimited(clientIp + "_" + endpoint, rateLimitType)) {
+        RateLimitStore.Decision decision = rateLimitService.tryAcquireRoute(subject, endpoint,
+                authentication != null ? authentication.getName() : null, 1);
+        RateLimitHeaders.of(decision).forEach((name, values) -> response.setHeader(name, values.get(0)));
+        if (!decision.allowed()) {
             response.setStatus(429); // Too Many Requests
             response.getWriter().write("Rate limit exceeded. Please try again later.");
             return false;
         }
 
-        rateLimitService.recordRequest(clientIp + "_" + endpoint, rateLimitType);
         return true;
     }
 
-    private RateLimitService.RateLimitType getRateLimitType(String endpoint) {
-        if (endpoint.contains("/auth/login")) {
-            return RateLimitService.RateLimitType.LOGIN_ATTEMPT;
-        } else if (endpoint.contains("/transfer")) {
-            return RateLimitService.RateLimitType.TRANSFER_OPERATION;
-        } else {
-            return RateLimitService.RateLimitType.API_REQUEST;
+    // Шаблон маршрута (/api/cards/{cardId}) вместо URI: перебор id не плодит ключи.
+    // Запросы без найденного обработчика делят один ключ на IP
+    private String getRoutePattern(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : UNMATCHED_ROUTE;
+    }
+
+    private Authentication getAuthentication() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
         }
+        return authentication;
     }
 
     private String getClientIp(HttpServletRequest request) {
@@ -0,0 +1,47 @@
+package com.bank.interceptor;
+
+import com.bank.service.MonitoringService;
+import com.bank.service.RequestLatency;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Замер запросов отслеживаемых операций по фазам (RequestLatency). Стоит перед цепочкой
+// Spring Security, чтобы в замер попадала проверка JWT. Операция определяется по шаблону маршрута
+// после обработки, поэтому запросы, отклоненные до контроллера (401), не учитываются
+@RequiredArgsConstructor
+public class RequestLatencyFilter extends OncePerRequestFilter {
+
+    private static final Map<String, String> OPERATIONS = Map.of(
+            "POST /api/cards/transfer", "transfer",
+            "POST /api/auth/login", "login",
+            "GET /api/cards", "card.list",
+            "GET /api/cards/{cardId}", "card.get",
+            "GET /api/cards/{cardId}/balance", "card.balance");
+
+    private final MonitoringService monitoringService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RequestLatency latency = RequestLatency.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestLatency.finish(latency);
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String operation = pattern != null ? OPERATIONS.get(request.getMethod() + " " + pattern) : null;
+            if (operation != null) {
+                monitoringService.recordRequestLatency(operation, latency);
+            }
+        }
+    }
+}
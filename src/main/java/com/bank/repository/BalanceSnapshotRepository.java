@@ -0,0 +1,20 @@
+package com.bank.repository;
+
+import com.bank.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    @Query("SELECT COALESCE(MAX(s.id), 0) FROM BalanceSnapshot s")
+    long findMaxId();
+
+    // Карты, свернутые с прошлой сверки
+    @Query("SELECT DISTINCT s.card.id FROM BalanceSnapshot s WHERE s.id > :afterId AND s.id <= :lastId")
+    List<Long> findCardIdsWithSnapshotsBetween(@Param("afterId") Long afterId, @Param("lastId") Long lastId);
+}
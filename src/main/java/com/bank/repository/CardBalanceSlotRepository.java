@@ -0,0 +1,49 @@
+package com.bank.repository;
+
+import com.bank.entity.CardBalanceSlot;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CardBalanceSlotRepository extends JpaRepository<CardBalanceSlot, Long> {
+
+    // Атомарное зачисление: блокируется только строка одного слота
+    @Modifying
+    @Query("UPDATE CardBalanceSlot s SET s.balance = s.balance + :amount WHERE s.card.id = :cardId AND s.slot = :slot")
+    int addToSlot(@Param("cardId") Long cardId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM CardBalanceSlot s WHERE s.card.id = :cardId")
+    BigDecimal sumByCardId(@Param("cardId") Long cardId);
+
+    // Баланс карты вместе со слотами одним запросом: перенос слотов в cards.balance,
+    // закоммиченный между двумя отдельными чтениями, выпал бы из суммы
+    @Query("SELECT c.id AS cardId, c.balance + COALESCE((SELECT SUM(s.balance) FROM CardBalanceSlot s " +
+            "WHERE s.card.id = c.id), 0) AS amount FROM Card c WHERE c.id IN :cardIds")
+    List<CardTotal> sumWithCardBalanceByCardIds(@Param("cardIds") Collection<Long> cardIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT s FROM CardBalanceSlot s WHERE s.card.id = :cardId ORDER BY s.slot")
+    List<CardBalanceSlot> findByCardIdForUpdate(@Param("cardId") Long cardId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM CardBalanceSlot s WHERE s.card.id = :cardId")
+    int deleteByCardId(@Param("cardId") Long cardId);
+
+    interface CardTotal {
+        Long getCardId();
+
+        BigDecimal getAmount();
+    }
+}
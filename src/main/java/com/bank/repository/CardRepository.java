@@ -2,14 +2,20 @@ package com.bank.repository;
 
 import com.bank.entity.Card;
 import com.bank.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,7 +41,39 @@ public interface CardRepository extends JpaRepository<Card, Long> {
 
     Optional<Card> findByIdAndUser(Long id, User user);
 
-    boolean existsByCardNumber(String cardNumber);
+    // Блокировка строки карты на запись (SELECT ... FOR UPDATE) для переводов
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT c FROM Card c WHERE c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    // Строки блокируются в порядке id - тот же порядок, что и при одиночных переводах
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.id FROM Card c WHERE c.balanceSlots > 0")
+    List<Long> findHotCardIds();
+
+    @Query("SELECT c.id FROM Card c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Баланс карты (с несвернутыми записями журнала и слотами) и тот же баланс, пересчитанный
+    // от opening_balance по строкам transactions. Один запрос - одно согласованное чтение:
+    // перевод коммитит строку transactions вместе с изменением баланса или записями журнала
+    @Query("SELECT c.id AS cardId, c.balance " +
+            "+ COALESCE((SELECT SUM(e.amount) FROM LedgerEntry e WHERE e.card.id = c.id AND e.snapshotId IS NULL), 0) " +
+            "+ COALESCE((SELECT SUM(s.balance) FROM CardBalanceSlot s WHERE s.card.id = c.id), 0) AS balance, " +
+            "c.openingBalance " +
+            "+ COALESCE((SELECT SUM(t.amount) FROM Transaction t WHERE t.toCard.id = c.id AND t.status = 'SUCCESS'), 0) " +
+            "- COALESCE((SELECT SUM(t.amount) FROM Transaction t WHERE t.fromCard.id = c.id AND t.status = 'SUCCESS'), 0) " +
+            "AS expectedBalance FROM Card c WHERE c.id IN :cardIds ORDER BY c.id")
+    List<BalanceCheck> findBalanceChecks(@Param("cardIds") Collection<Long> cardIds);
+
+    boolean existsByCardNumberHash(String cardNumberHash);
+
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
 
     @Query("SELECT COUNT(c) > 0 FROM Card c WHERE c.id = :cardId AND c.user.id = :userId")
     boolean existsByIdAndUserId(@Param("cardId") Long cardId, @Param("userId") Long userId);
@@ -65,4 +103,12 @@ public interface CardRepository extends JpaRepository<Card, Long> {
     default Page<Card> findByUserAndCardHolderContainingIgnoreCase(User user, String search, Pageable pageable) {
         return findByUserAndSearch(user, search, pageable);
     }
+
+    interface BalanceCheck {
+        Long getCardId();
+
+        BigDecimal getBalance();
+
+        BigDecimal getExpectedBalance();
+    }
 }
@@ -0,0 +1,57 @@
+package com.bank.repository;
+
+import com.bank.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    // Сумма и количество несвернутых записей карты
+    @Query("SELECT COALESCE(SUM(e.amount), 0) AS amount, COUNT(e) AS entries FROM LedgerEntry e " +
+            "WHERE e.card.id = :cardId AND e.snapshotId IS NULL")
+    EntryTotal sumPending(@Param("cardId") Long cardId);
+
+    @Query("SELECT e.card.id AS cardId, SUM(e.amount) AS amount FROM LedgerEntry e " +
+            "WHERE e.card.id IN :cardIds AND e.snapshotId IS NULL GROUP BY e.card.id")
+    List<CardTotal> sumPendingByCard(@Param("cardIds") Collection<Long> cardIds);
+
+    // Отмечает закоммиченные несвернутые записи карты; незакоммиченные вставки в UPDATE не попадают
+    // и останутся несвернутыми до следующей свертки
+    @Modifying
+    @Query("UPDATE LedgerEntry e SET e.snapshotId = :snapshotId WHERE e.card.id = :cardId AND e.snapshotId IS NULL")
+    int markFolded(@Param("cardId") Long cardId, @Param("snapshotId") Long snapshotId);
+
+    @Query("SELECT COALESCE(SUM(e.amount), 0) AS amount, COUNT(e) AS entries, " +
+            "MIN(e.id) AS firstEntryId, MAX(e.id) AS lastEntryId FROM LedgerEntry e " +
+            "WHERE e.snapshotId = :snapshotId")
+    SnapshotWindow sumBySnapshot(@Param("snapshotId") Long snapshotId);
+
+    @Query("SELECT DISTINCT e.card.id FROM LedgerEntry e WHERE e.snapshotId IS NULL")
+    List<Long> findCardIdsWithPendingEntries();
+
+    interface EntryTotal {
+        BigDecimal getAmount();
+
+        long getEntries();
+    }
+
+    interface SnapshotWindow extends EntryTotal {
+        Long getFirstEntryId();
+
+        Long getLastEntryId();
+    }
+
+    interface CardTotal {
+        Long getCardId();
+
+        BigDecimal getAmount();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bank.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+// Подбор work factor BCrypt под конкретный узел: замер на минимальной стоимости и экстраполяция -
+// каждая единица стоимости удваивает время проверки. Выбирается наибольшая стоимость,
+// при которой одна проверка укладывается в targetMillis
+@Slf4j
+public final class BCryptCostCalibrator {
+
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private BCryptCostCalibrator() {
+    }
+
+    public static int calibrate(long targetMillis, int minCost, int maxCost) {
+        // Первый вызов прогревает JIT и в замер не идет
+        measure(minCost);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            bestNanos = Math.min(bestNanos, measure(minCost));
+        }
+
+        int cost = minCost;
+        long estimatedNanos = bestNanos;
+        long targetNanos = targetMillis * 1_000_000L;
+        while (cost < maxCost && estimatedNanos * 2 <= targetNanos) {
+            cost++;
+            estimatedNanos *= 2;
+        }
+
+        log.info("BCrypt cost calibrated: {} (cost {} takes {} ms, estimated {} ms, target {} ms)",
+                cost, minCost, bestNanos / 1_000_000, estimatedNanos / 1_000_000, targetMillis);
+        return cost;
+    }
+
+    private static long measure(int cost) {
+        String hash = BCrypt.hashpw(SAMPLE_PASSWORD, BCrypt.gensalt(cost));
+        long start = System.nanoTime();
+        BCrypt.checkpw(SAMPLE_PASSWORD, hash);
+        return System.nanoTime() - start;
+    }
+}
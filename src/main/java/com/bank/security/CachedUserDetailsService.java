@@ -0,0 +1,134 @@
+package com.bank.security;
+
+import com.bank.entity.User;
+import com.bank.service.MonitoringService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Set;
+
+// Пользователи для JwtAuthenticationFilter: запрос с токеном не обращается к БД, пока запись в кэше.
+// Запись удаляется после коммита изменения роли или пароля и после удаления пользователя.
+// Вход по паролю идет мимо кэша через CustomUserDetailsService
+@Slf4j
+@Service
+public class CachedUserDetailsService implements UserDetailsService,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Set<String> SECURITY_PROPERTIES = Set.of("password", "role");
+
+    private final CustomUserDetailsService userDetailsService;
+    private final MonitoringService monitoringService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Cache<String, User> users;
+
+    public CachedUserDetailsService(CustomUserDetailsService userDetailsService,
+                                    MonitoringService monitoringService,
+                                    EntityManagerFactory entityManagerFactory,
+                                    @Value("${app.security.user-cache.max-size:10000}") long maxSize,
+                                    @Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userDetailsService = userDetailsService;
+        this.monitoringService = monitoringService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    // Изменения через JPA сбрасывают кэш; массовые JPQL-обновления users его не затрагивают - их покрывает TTL
+    @PostConstruct
+    public void registerInvalidationListener() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public User loadUserByUsername(String username) throws UsernameNotFoundException {
+        User cached = users.getIfPresent(username);
+        monitoringService.recordUserCacheLookup(cached != null);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Принципал - отсоединенная копия сущности: контроллеры получают User с id, как и при входе.
+        // Хеш пароля фильтру не нужен и в кэше не хранится
+        User user = (User) userDetailsService.loadUserByUsername(username);
+        User loaded = User.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password("")
+                .email(user.getEmail())
+                .role(user.getRole())
+                .createdAt(user.getCreatedAt())
+                .build();
+        users.put(username, loaded);
+        return loaded;
+    }
+
+    public void evict(String username) {
+        users.invalidate(username);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof User user && changesCredentials(event)) {
+            log.debug("Evicting cached user {} after role or password change", user.getUsername());
+            evict(user.getUsername());
+        }
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof User user) {
+            evict(user.getUsername());
+        }
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return User.class.equals(persister.getMappedClass());
+    }
+
+    // Без информации о грязных полях (например, merge отсоединенной сущности) запись удаляется всегда
+    private boolean changesCredentials(PostUpdateEvent event) {
+        int[] dirtyProperties = event.getDirtyProperties();
+        if (dirtyProperties == null) {
+            return true;
+        }
+        String[] propertyNames = event.getPersister().getPropertyNames();
+        for (int index : dirtyProperties) {
+            if (SECURITY_PROPERTIES.contains(propertyNames[index])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,5 +1,9 @@
 package com.bank.security;
 
+import com.bank.entity.User;
+import com.bank.service.RequestLatency;
+import com.bank.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,24 +17,28 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        try {
+        try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.AUTH)) {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromJWT(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            Optional<Claims> claims = StringUtils.hasText(jwt) ? tokenProvider.parseValidatedClaims(jwt) : Optional.empty();
+            if (claims.isPresent() && !tokenRevocationService.isRevoked(claims.get().getId())) {
+                Optional<User> claimsPrincipal = tokenProvider.getPrincipalFromClaims(claims.get());
+                UserDetails userDetails = claimsPrincipal.isPresent()
+                        ? claimsPrincipal.get()
+                        : userDetailsService.loadUserByUsername(claims.get().getSubject());
                 var authentication = new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
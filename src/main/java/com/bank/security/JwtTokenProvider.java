@@ -1,28 +1,74 @@
 package com.bank.security;
 
+import com.bank.entity.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    private static final long DEFAULT_VERIFIED_CACHE_SIZE = 10_000;
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLE_CLAIM = "role";
+
     private final SecretKey signingKey;
     private final long jwtExpirationInMs;
+    // Токен несет id и роль пользователя, и фильтр строит принципал без обращения к БД
+    private final boolean claimsPrincipal;
+    // JwtParser неизменяем и потокобезопасен - собирается один раз на весь процесс
+    private final JwtParser jwtParser;
+    // Дайджест токена -> проверенные claims; запись живет не дольше срока действия токена
+    private final Cache<String, Claims> verifiedTokens;
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(JwtTokenProvider::createDigest);
+
+    public JwtTokenProvider(String jwtSecret, long jwtExpirationInMs) {
+        this(jwtSecret, jwtExpirationInMs, DEFAULT_VERIFIED_CACHE_SIZE, false);
+    }
 
+    @Autowired
     public JwtTokenProvider(@Value("${jwt.secret:bank-rest-secret-key-2024-very-secure-and-long}") String jwtSecret,
-                            @Value("${jwt.expiration:86400000}") long jwtExpirationInMs) {
+                            @Value("${jwt.expiration:900000}") long jwtExpirationInMs,
+                            @Value("${jwt.verified-cache.max-size:10000}") long verifiedCacheSize,
+                            @Value("${jwt.claims-principal.enabled:false}") boolean claimsPrincipal) {
         this.jwtExpirationInMs = jwtExpirationInMs;
+        this.claimsPrincipal = claimsPrincipal;
         this.signingKey = getSigningKey(jwtSecret);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     private SecretKey getSigningKey(String jwtSecret) {
@@ -50,32 +96,63 @@ public class JwtTokenProvider {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(","));
 
-        return Jwts.builder()
+        // jti - идентификатор токена для отзыва через TokenRevocationService
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("authorities", authorities)
                 .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(signingKey, SignatureAlgorithm.HS256)
-                .compact();
-    }
+                .setExpiration(expiryDate);
 
-    public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        if (claimsPrincipal && authentication.getPrincipal() instanceof User user) {
+            builder.claim(USER_ID_CLAIM, user.getId())
+                    .claim(ROLE_CLAIM, user.getRole().name());
+        }
 
-        return claims.getSubject();
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
     }
 
-    public boolean validateToken(String authToken) {
+    // Принципал из claims: отсоединенная ссылка на User с id, именем и ролью, без загрузки из БД.
+    // Токены без id (выданные до включения режима) идут прежним путем через UserDetailsService.
+    // Смена роли вступает в силу для таких токенов только после их истечения
+    public Optional<User> getPrincipalFromClaims(Claims claims) {
+        if (!claimsPrincipal) {
+            return Optional.empty();
+        }
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null) {
+            return Optional.empty();
+        }
+        return Optional.of(User.builder()
+                .id(userId.longValue())
+                .username(claims.getSubject())
+                .role(User.Role.valueOf(role))
+                .build());
+    }
+
+    // Один разбор и одна проверка подписи на запрос; повторный запрос с тем же токеном
+    // берет claims из кэша без HMAC. Пустой результат - токен недействителен
+    public Optional<Claims> parseValidatedClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            log.error("JWT claims string is empty");
+            return Optional.empty();
+        }
+
+        String digest = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            // Запись могла пережить exp на долю интервала очистки кэша
+            if (cached.getExpiration() == null || cached.getExpiration().after(new Date())) {
+                return Optional.of(cached);
+            }
+            verifiedTokens.invalidate(digest);
+        }
+
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(signingKey)
-                    .build()
-                    .parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            verifiedTokens.put(digest, claims);
+            return Optional.of(claims);
         } catch (MalformedJwtException ex) {
             log.error("Invalid JWT token");
         } catch (ExpiredJwtException ex) {
@@ -87,6 +164,44 @@ public class JwtTokenProvider {
         } catch (Exception ex) {
             log.error("JWT validation error: {}", ex.getMessage());
         }
-        return false;
+        return Optional.empty();
+    }
+
+    public String getUsernameFromJWT(String token) {
+        return jwtParser.parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    public boolean validateToken(String authToken) {
+        return parseValidatedClaims(authToken).isPresent();
+    }
+
+    private String digest(String token) {
+        byte[] hash = sha256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long remainingMs = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
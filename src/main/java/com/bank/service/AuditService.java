@@ -22,7 +22,13 @@ public class AuditService {
     @Transactional
     public void logActivity(String actionType, String description, boolean success,
                             String resourceId, String requestDetails, HttpServletRequest request) {
+        try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.AUDIT)) {
+            saveAuditLog(actionType, description, success, resourceId, requestDetails, request);
+        }
+    }
 
+    private void saveAuditLog(String actionType, String description, boolean success,
+                              String resourceId, String requestDetails, HttpServletRequest request) {
         String username = getCurrentUsername();
         String ipAddress = getClientIp(request);
         String userAgent = request != null ? request.getHeader("User-Agent") : null;
@@ -0,0 +1,100 @@
+package com.bank.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Разовое заполнение card_last4 и card_number_hash для карт, созданных до появления этих столбцов.
+// Таблица читается порциями по id, каждая порция обновляется одним JDBC-батчем в своей транзакции
+@Slf4j
+@Service
+public class CardNumberBackfillService {
+
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, card_number FROM cards WHERE (card_last4 IS NULL OR card_number_hash IS NULL) " +
+                    "AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_CARD_SQL =
+            "UPDATE cards SET card_last4 = COALESCE(card_last4, ?), " +
+                    "card_number_hash = COALESCE(card_number_hash, ?) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final CardNumberIndexService cardNumberIndexService;
+    private final int chunkSize;
+
+    public CardNumberBackfillService(JdbcTemplate jdbcTemplate,
+                                     EncryptionService encryptionService,
+                                     CardNumberIndexService cardNumberIndexService,
+                                     @Value("${app.card-backfill.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        this.cardNumberIndexService = cardNumberIndexService;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        int updated = backfill();
+        if (updated > 0) {
+            log.info("Backfilled card_last4 and card_number_hash for {} cards", updated);
+        }
+    }
+
+    public int backfill() {
+        long lastId = 0;
+        int updated = 0;
+
+        while (true) {
+            List<Object[]> chunk = jdbcTemplate.query(SELECT_CHUNK_SQL,
+                    (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("card_number")},
+                    lastId, chunkSize);
+            if (chunk.isEmpty()) {
+                return updated;
+            }
+
+            List<Object[]> batch = new ArrayList<>(chunk.size());
+            for (Object[] row : chunk) {
+                Object[] values = derivedValues((Long) row[0], (String) row[1]);
+                if (values != null) {
+                    batch.add(values);
+                }
+            }
+            jdbcTemplate.batchUpdate(UPDATE_CARD_SQL, batch);
+
+            updated += batch.size();
+            lastId = (Long) chunk.get(chunk.size() - 1)[0];
+        }
+    }
+
+    // Параметры UPDATE_CARD_SQL: последние 4 цифры, слепой индекс, id
+    private Object[] derivedValues(Long cardId, String encryptedCardNumber) {
+        byte[] decrypted = null;
+        try {
+            decrypted = encryptionService.decryptToBytes(encryptedCardNumber);
+            if (decrypted == null || decrypted.length < 4) {
+                return null;
+            }
+            return new Object[]{
+                    new String(decrypted, decrypted.length - 4, 4, StandardCharsets.UTF_8),
+                    cardNumberIndexService.hash(decrypted),
+                    cardId
+            };
+        } catch (RuntimeException e) {
+            // Строка пропускается и остается незаполненной - следующие порции не блокируются
+            log.warn("Cannot backfill card {}: {}", cardId, e.getMessage());
+            return null;
+        } finally {
+            if (decrypted != null) {
+                Arrays.fill(decrypted, (byte) 0);
+            }
+        }
+    }
+}
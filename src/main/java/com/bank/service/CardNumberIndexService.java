@@ -0,0 +1,47 @@
+package com.bank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+// "Слепой индекс" номера карты: HMAC-SHA256 с отдельным ключом.
+// Детерминирован, поэтому ищется по уникальному индексу, и без ключа не позволяет перебрать номера
+@Service
+public class CardNumberIndexService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec indexKey;
+    private final ThreadLocal<Mac> mac;
+
+    public CardNumberIndexService(@Value("${app.encryption.blind-index-key:bank-blind-index-key-32-chars-long!}") String blindIndexKey) {
+        this.indexKey = new SecretKeySpec(blindIndexKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(indexKey);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error initializing blind index", e);
+        }
+    }
+
+    public String hash(String cardNumber) {
+        if (cardNumber == null) return null;
+
+        return hash(cardNumber.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Mac после doFinal сбрасывается в состояние после init и готов к следующему вызову
+    public String hash(byte[] cardNumber) {
+        return HexFormat.of().formatHex(mac.get().doFinal(cardNumber));
+    }
+}
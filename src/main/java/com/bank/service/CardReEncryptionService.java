@@ -0,0 +1,216 @@
+package com.bank.service;
+
+import com.bank.dto.KeyRotationStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ротация ключа: фоновая перешифровка cards.card_number активным ключом.
+// Таблица читается порциями по id, порция перешифровывается на ограниченном пуле
+// и записывается одним JDBC-батчем. Старые строки читаются как обычно, пока старый ключ в конфигурации
+@Slf4j
+@Service
+public class CardReEncryptionService {
+
+    private static final String SELECT_CHUNK_SQL =
+            "SELECT id, card_number FROM cards WHERE id > ? AND card_number NOT LIKE ? ORDER BY id LIMIT ?";
+    // Запись только если номер не изменился с момента чтения порции. Версия увеличивается, чтобы
+    // карта, прочитанная JPA до перешифровки, не записала поверх прежний шифротекст
+    private static final String UPDATE_CARD_NUMBER_SQL =
+            "UPDATE cards SET card_number = ?, version = version + 1 WHERE id = ? AND card_number = ?";
+    private static final String COUNT_REMAINING_SQL =
+            "SELECT COUNT(*) FROM cards WHERE card_number NOT LIKE ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final MonitoringService monitoringService;
+    private final int chunkSize;
+    private final int threads;
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong reEncrypted = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger maxRowsPerSecond;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile Long lastCardId;
+    private volatile double rowsPerSecond;
+    private Thread job;
+
+    public CardReEncryptionService(JdbcTemplate jdbcTemplate,
+                                   EncryptionService encryptionService,
+                                   MonitoringService monitoringService,
+                                   @Value("${app.encryption.re-encryption.chunk-size:500}") int chunkSize,
+                                   @Value("${app.encryption.re-encryption.threads:4}") int threads,
+                                   @Value("${app.encryption.re-encryption.max-rows-per-second:0}") int maxRowsPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        this.monitoringService = monitoringService;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.threads = Math.max(1, threads);
+        this.maxRowsPerSecond = new AtomicInteger(Math.max(0, maxRowsPerSecond));
+        // Порция делится не больше чем на threads срезов; при заполнении очереди срез выполняет поток задания
+        this.workers = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(this.threads), runnable -> {
+            Thread thread = new Thread(runnable, "card-re-encryption-worker");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running.set(false);
+        workers.shutdownNow();
+    }
+
+    // Запускает перешифровку в фоне; повторный вызов во время работы возвращает текущее состояние
+    public synchronized KeyRotationStatus start() {
+        // После stop() предыдущий проход может еще дописывать порцию - новый не запускается до его завершения
+        if ((job == null || !job.isAlive()) && running.compareAndSet(false, true)) {
+            reEncrypted.set(0);
+            conflicts.set(0);
+            failed.set(0);
+            lastCardId = null;
+            rowsPerSecond = 0;
+            startedAt = LocalDateTime.now();
+            finishedAt = null;
+
+            job = new Thread(this::runJob, "card-re-encryption");
+            job.setDaemon(true);
+            job.start();
+        }
+        return getStatus();
+    }
+
+    public void stop() {
+        running.set(false);
+    }
+
+    public KeyRotationStatus setMaxRowsPerSecond(int rowsPerSecond) {
+        if (rowsPerSecond < 0) {
+            throw new IllegalArgumentException("Max rows per second must not be negative");
+        }
+        maxRowsPerSecond.set(rowsPerSecond);
+        return getStatus();
+    }
+
+    public KeyRotationStatus getStatus() {
+        Long remaining = jdbcTemplate.queryForObject(COUNT_REMAINING_SQL, Long.class, activeKeyPattern());
+        return new KeyRotationStatus(encryptionService.getActiveKeyId(), running.get(), startedAt, finishedAt,
+                lastCardId, reEncrypted.get(), conflicts.get(), failed.get(), rowsPerSecond,
+                maxRowsPerSecond.get(), remaining == null ? 0 : remaining);
+    }
+
+    private void runJob() {
+        log.info("Card re-encryption to key {} started", encryptionService.getActiveKeyId());
+        long started = System.nanoTime();
+        try {
+            long afterId = 0;
+            while (running.get()) {
+                long chunkStarted = System.nanoTime();
+                List<Object[]> chunk = jdbcTemplate.query(SELECT_CHUNK_SQL,
+                        (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("card_number")},
+                        afterId, activeKeyPattern(), chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                int written = writeBack(reEncrypt(chunk));
+                afterId = (Long) chunk.get(chunk.size() - 1)[0];
+                lastCardId = afterId;
+                monitoringService.recordCardReEncryption(written);
+
+                throttle(chunk.size(), System.nanoTime() - chunkStarted);
+                rowsPerSecond = reEncrypted.get() * 1e9 / Math.max(1, System.nanoTime() - started);
+                log.debug("Card re-encryption progress: {} rows, last id {}, {} rows/s",
+                        reEncrypted.get(), afterId, Math.round(rowsPerSecond));
+            }
+        } catch (Exception e) {
+            log.error("Card re-encryption stopped after card {}", lastCardId, e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+            log.info("Card re-encryption finished: {} re-encrypted, {} conflicts, {} failed, {} rows/s",
+                    reEncrypted.get(), conflicts.get(), failed.get(), Math.round(rowsPerSecond));
+        }
+    }
+
+    // Порция делится на срезы по числу потоков; строки, которые не удалось расшифровать, пропускаются
+    private List<Object[]> reEncrypt(List<Object[]> chunk) {
+        int sliceSize = (chunk.size() + threads - 1) / threads;
+        List<CompletableFuture<List<Object[]>>> slices = new ArrayList<>();
+        for (int from = 0; from < chunk.size(); from += sliceSize) {
+            List<Object[]> slice = chunk.subList(from, Math.min(from + sliceSize, chunk.size()));
+            slices.add(CompletableFuture.supplyAsync(() -> reEncryptSlice(slice), workers));
+        }
+
+        List<Object[]> batch = new ArrayList<>(chunk.size());
+        for (CompletableFuture<List<Object[]>> slice : slices) {
+            batch.addAll(slice.join());
+        }
+        return batch;
+    }
+
+    // Параметры UPDATE_CARD_NUMBER_SQL: новый шифртекст, id, прочитанный шифртекст
+    private List<Object[]> reEncryptSlice(List<Object[]> slice) {
+        List<Object[]> updates = new ArrayList<>(slice.size());
+        for (Object[] row : slice) {
+            try {
+                updates.add(new Object[]{encryptionService.reEncrypt((String) row[1]), row[0], row[1]});
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.warn("Cannot re-encrypt card {}: {}", row[0], e.getMessage());
+            }
+        }
+        return updates;
+    }
+
+    private int writeBack(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPDATE_CARD_NUMBER_SQL, batch)) {
+            // Строку изменили после чтения порции - ее подберет следующий запуск
+            if (count == 0) {
+                conflicts.incrementAndGet();
+            } else {
+                written++;
+            }
+        }
+        reEncrypted.addAndGet(written);
+        return written;
+    }
+
+    // Порция не быстрее max-rows-per-second: ограничение меняется на ходу и применяется со следующей порции
+    private void throttle(int rows, long elapsedNanos) throws InterruptedException {
+        int limit = maxRowsPerSecond.get();
+        if (limit <= 0) {
+            return;
+        }
+        long pauseNanos = rows * TimeUnit.SECONDS.toNanos(1) / limit - elapsedNanos;
+        if (pauseNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+    }
+
+    private String activeKeyPattern() {
+        return encryptionService.getActiveKeyId() + ":%";
+    }
+}
@@ -1,5 +1,9 @@
 package com.bank.service;
 
+import com.bank.aspect.RetryOnConcurrencyFailure;
+import com.bank.dto.BatchTransferResponse;
+import com.bank.dto.TransferCommand;
+import com.bank.dto.TransferRequest;
 import com.bank.entity.Card;
 import com.bank.entity.Transaction;
 import com.bank.entity.User;
@@ -9,16 +13,29 @@ import com.bank.exception.*;
 import com.bank.repository.CardRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
 
 @Service
 @RequiredArgsConstructor
@@ -31,6 +48,21 @@ public class CardService {
     private final MonitoringService monitoringService;
     private final ApplicationEventPublisher eventPublisher;
     private final AuditService auditService;
+    private final IdempotencyService idempotencyService;
+    private final LedgerService ledgerService;
+    private final HotCardService hotCardService;
+
+    public static final String TRANSFER_COMPLETED_MESSAGE = "Transfer completed successfully";
+
+    @Value("${app.transfer.strategy:PESSIMISTIC}")
+    private TransferStrategy transferStrategy = TransferStrategy.PESSIMISTIC;
+
+    // PESSIMISTIC - блокировка строк карт на время транзакции (для "горячих" карт),
+    // OPTIMISTIC - проверка версии при коммите и повтор перевода (для низкой конкуренции),
+    // LEDGER - записи в журнал вместо изменения балансов, блокируется только карта-источник
+    public enum TransferStrategy {
+        PESSIMISTIC, OPTIMISTIC, LEDGER
+    }
 
     public Page<Card> getUserCards(User user, Pageable pageable, String search) {
         log.debug("Getting cards for user: id={}, username={}", user.getId(), user.getUsername());
@@ -52,6 +84,16 @@ public class CardService {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new CardNotFoundException("Card not found with id: " + cardId));
 
+        checkCardAccess(card, user);
+        return card;
+    }
+
+    public Card getCardByNumberHash(String cardNumberHash) {
+        return cardRepository.findByCardNumberHash(cardNumberHash)
+                .orElseThrow(() -> new CardNotFoundException("Card not found"));
+    }
+
+    private void checkCardAccess(Card card, User user) {
         // Проверяем, что пользователь является владельцем карты или администратором
         boolean isOwner = card.getUser().getId().equals(user.getId());
         boolean isAdmin = user.getRole().equals(User.Role.ROLE_ADMIN);
@@ -62,8 +104,40 @@ public class CardService {
         if (!isOwner && !isAdmin) {
             throw new UnauthorizedAccessException("Access denied to card");
         }
+    }
 
-        return card;
+    public BigDecimal getCardBalance(Long cardId, User user) {
+        return getCardBalance(getCardById(cardId, user));
+    }
+
+    // Полный баланс карты. Журнал читается только в режиме LEDGER (в остальных режимах оставшиеся
+    // записи сворачиваются при старте), слоты - только у "горячих" карт: вместе с балансом
+    // одним запросом, иначе перенос слотов между чтениями выпал бы из суммы
+    public BigDecimal getCardBalance(Card card) {
+        if (!card.isHot()) {
+            return transferStrategy == TransferStrategy.LEDGER ? ledgerService.getBalance(card) : card.getBalance();
+        }
+        BigDecimal balance = hotCardService.getTotalBalance(card);
+        return transferStrategy == TransferStrategy.LEDGER
+                ? balance.add(ledgerService.getPendingAmount(card.getId()))
+                : balance;
+    }
+
+    // То же для страницы карт: по одному запросу к журналу и слотам на всю страницу
+    public Map<Long, BigDecimal> getCardBalances(Collection<Card> cards) {
+        List<Long> cardIds = cards.stream().map(Card::getId).toList();
+        List<Long> hotCardIds = cards.stream().filter(Card::isHot).map(Card::getId).toList();
+        Map<Long, BigDecimal> pending = transferStrategy == TransferStrategy.LEDGER && !cardIds.isEmpty()
+                ? ledgerService.getPendingAmounts(cardIds)
+                : Map.of();
+        Map<Long, BigDecimal> hotTotals = hotCardIds.isEmpty() ? Map.of() : hotCardService.getTotalBalances(hotCardIds);
+
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (Card card : cards) {
+            balances.put(card.getId(), hotTotals.getOrDefault(card.getId(), card.getBalance())
+                    .add(pending.getOrDefault(card.getId(), BigDecimal.ZERO)));
+        }
+        return balances;
     }
 
     public Page<Card> getAllCards(Pageable pageable) {
@@ -82,7 +156,7 @@ public class CardService {
     @Transactional
     public Card createCard(Card card) {
         // Проверка на дубликат карты
-        if (cardRepository.existsByCardNumber(card.getCardNumber())) {
+        if (cardRepository.existsByCardNumberHash(card.getCardNumberHash())) {
             throw new CardAlreadyExistsException("Card with this number already exists");
         }
 
@@ -134,7 +208,9 @@ public class CardService {
         cardRepository.save(card);
 
         // Публикуем событие запроса блокировки
-        eventPublisher.publishEvent(new CardBlockRequestedEvent(this, card, "User requested block"));
+        try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.EVENT)) {
+            eventPublisher.publishEvent(new CardBlockRequestedEvent(this, card, "User requested block"));
+        }
 
         monitoringService.recordCardBlockRequest(cardId, user.getUsername());
 
@@ -151,46 +227,68 @@ public class CardService {
     }
 
     @Transactional
+    @RetryOnConcurrencyFailure
     public void transferBetweenCards(User user, Long fromCardId, Long toCardId, BigDecimal amount) {
+        transferBetweenCards(user, fromCardId, toCardId, amount, null);
+    }
+
+    @Transactional
+    @RetryOnConcurrencyFailure
+    public void transferBetweenCards(User user, Long fromCardId, Long toCardId, BigDecimal amount,
+                                     String idempotencyKey) {
         long startTime = System.currentTimeMillis();
 
         try {
-            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-                throw new IllegalArgumentException("Transfer amount must be positive");
-            }
-
-            if (fromCardId.equals(toCardId)) {
-                throw new IllegalArgumentException("Cannot transfer to the same card");
-            }
+            validateTransferRequest(fromCardId, toCardId, amount);
 
-            Card fromCard = getCardById(fromCardId, user);
-            Card toCard = getCardById(toCardId, user);
-
-            // Проверяем, что обе карты принадлежат пользователю
-            if (!fromCard.getUser().getId().equals(user.getId()) ||
-                    !toCard.getUser().getId().equals(user.getId())) {
-                throw new UnauthorizedAccessException("You can only transfer between your own cards");
+            // Ключ фиксируется до блокировок карт: повтор откатится, не дожидаясь их
+            if (idempotencyKey != null) {
+                idempotencyService.register(user.getUsername(), idempotencyKey,
+                        IdempotencyService.transferFingerprint(fromCardId, toCardId, amount),
+                        200, TRANSFER_COMPLETED_MESSAGE);
             }
 
-            if (!fromCard.isActive()) {
-                throw new IllegalStateException("Source card is not active");
+            boolean ledger = transferStrategy == TransferStrategy.LEDGER;
+            // Признак "горячей" карты - из памяти HotCardService, без отдельного запроса к cards
+            boolean hotCredit = transferStrategy == TransferStrategy.PESSIMISTIC && hotCardService.isHot(toCardId);
+            Card[] cards = switch (transferStrategy) {
+                case OPTIMISTIC -> loadCards(fromCardId, toCardId);
+                // Зачисление - только вставка в журнал, поэтому карта-получатель не блокируется
+                case LEDGER -> new Card[]{lockCard(fromCardId), findCard(toCardId)};
+                // Зачисление на "горячую" карту идет в слот баланса, ее строка не блокируется
+                default -> hotCredit
+                        ? new Card[]{lockCard(fromCardId), findCard(toCardId)}
+                        : lockCardsInOrder(fromCardId, toCardId);
+            };
+            Card fromCard = cards[0];
+            Card toCard = cards[1];
+            if (transferStrategy == TransferStrategy.PESSIMISTIC) {
+                hotCardService.observe(toCard);
             }
-
-            if (!toCard.isActive()) {
-                throw new IllegalStateException("Destination card is not active");
+            if (hotCredit && !toCard.isHot()) {
+                // Карта вышла из режима слотов: признак уже снят по строке, повтор заблокирует обе карты
+                throw new ConcurrencyFailureException("Balance slots of card " + toCardId + " changed during transfer");
             }
-
-            if (fromCard.getBalance().compareTo(amount) < 0) {
-                throw new InsufficientBalanceException("Insufficient balance for transfer");
+            checkCardAccess(fromCard, user);
+            checkCardAccess(toCard, user);
+            BigDecimal availableBalance = (ledger ? ledgerService.getBalanceForDebit(fromCard) : fromCard.getBalance())
+                    .add(hotCardService.getSlotBalance(fromCard));
+            validateTransfer(user, fromCard, toCard, amount, availableBalance);
+
+            // Выполняем перевод (карты управляемые и заблокированные - изменения сбросятся при коммите)
+            if (!ledger) {
+                if (fromCard.isHot()) {
+                    hotCardService.debit(fromCard, amount);
+                } else {
+                    fromCard.setBalance(fromCard.getBalance().subtract(amount));
+                }
+                if (toCard.isHot()) {
+                    hotCardService.credit(toCard, fromCardId, amount);
+                } else {
+                    toCard.setBalance(toCard.getBalance().add(amount));
+                }
             }
 
-            // Выполняем перевод
-            fromCard.setBalance(fromCard.getBalance().subtract(amount));
-            toCard.setBalance(toCard.getBalance().add(amount));
-
-            cardRepository.save(fromCard);
-            cardRepository.save(toCard);
-
             // Создаем запись о транзакции
             Transaction transaction = Transaction.builder()
                     .fromCard(fromCard)
@@ -200,9 +298,15 @@ public class CardService {
                     .build();
 
             Transaction savedTransaction = transactionService.saveTransaction(transaction);
+            if (ledger) {
+                ledgerService.recordTransfer(savedTransaction);
+            }
 
             // Публикуем событие успешного перевода
-            eventPublisher.publishEvent(new TransferCompletedEvent(this, savedTransaction, fromCard, toCard, amount));
+            try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.EVENT)) {
+                eventPublisher.publishEvent(
+                        new TransferCompletedEvent(this, savedTransaction, fromCard, toCard, amount));
+            }
 
             long duration = System.currentTimeMillis() - startTime;
             monitoringService.recordTransfer(user.getUsername(), toCard.getUser().getUsername(), amount);
@@ -233,16 +337,238 @@ public class CardService {
         }
     }
 
+    @Transactional
+    @RetryOnConcurrencyFailure
+    public BatchTransferResponse transferBatch(User user, List<TransferRequest> legs, boolean atomic) {
+        long startTime = System.currentTimeMillis();
+
+        List<Transaction> transactions = new ArrayList<>(legs.size());
+        List<TransferCompletedEvent> events = new ArrayList<>(legs.size());
+        List<BatchTransferResponse.LegResult> results = applyLegs(legs, index -> user, transactions, events);
+
+        int failed = legs.size() - transactions.size();
+        if (atomic && failed > 0) {
+            // Исключение откатывает транзакцию, включая уже примененные в памяти изменения балансов
+            List<BatchTransferResponse.LegResult> rolledBack = results.stream()
+                    .map(result -> result.getStatus() == BatchTransferResponse.LegStatus.SUCCESS
+                            ? new BatchTransferResponse.LegResult(result.getIndex(), result.getFromCardId(),
+                            result.getToCardId(), result.getAmount(), BatchTransferResponse.LegStatus.ROLLED_BACK, null)
+                            : result)
+                    .toList();
+            log.warn("Atomic batch transfer rejected: {} of {} legs failed", failed, legs.size());
+            throw new BatchTransferRejectedException("Batch transfer rejected: " + failed + " legs failed",
+                    new BatchTransferResponse(false, 0, failed, rolledBack));
+        }
+
+        if (!transactions.isEmpty()) {
+            saveLegs(transactions);
+            publishAfterCommit(events);
+            monitoringService.recordBatchTransfer(user.getUsername(), transactions.size(), failed);
+        }
+
+        auditService.logActivity("BATCH_TRANSFER",
+                String.format("Batch transfer: %d legs succeeded, %d failed", transactions.size(), failed),
+                failed == 0, null, null, null);
+
+        log.info("Batch transfer completed: {} legs succeeded, {} failed ({} ms)",
+                transactions.size(), failed, System.currentTimeMillis() - startTime);
+
+        return new BatchTransferResponse(true, transactions.size(), failed, results);
+    }
+
+    // Переводы разных пользователей, собранные в одну группу: одна транзакция и один flush на группу.
+    // Ошибка отдельного перевода не откатывает остальные
+    @Transactional
+    @RetryOnConcurrencyFailure
+    public List<BatchTransferResponse.LegResult> transferGroup(List<TransferCommand> commands) {
+        List<TransferRequest> legs = commands.stream().map(TransferCommand::getRequest).toList();
+        List<Transaction> transactions = new ArrayList<>(legs.size());
+        List<TransferCompletedEvent> events = new ArrayList<>(legs.size());
+        List<BatchTransferResponse.LegResult> results = applyLegs(legs,
+                index -> commands.get(index).getUser(), transactions, events);
+
+        if (!transactions.isEmpty()) {
+            saveLegs(transactions);
+            publishAfterCommit(events);
+        }
+
+        int failed = legs.size() - transactions.size();
+        auditService.logActivity("GROUP_TRANSFER",
+                String.format("Group commit: %d transfers succeeded, %d failed", transactions.size(), failed),
+                failed == 0, null, null, null);
+
+        return results;
+    }
+
+    // Каждая карта читается и блокируется один раз на все переводы; успешные переводы
+    // добавляются в transactions и events, по каждому возвращается результат
+    private List<BatchTransferResponse.LegResult> applyLegs(List<TransferRequest> legs, IntFunction<User> userOfLeg,
+                                                            List<Transaction> transactions,
+                                                            List<TransferCompletedEvent> events) {
+        Set<Long> cardIds = new TreeSet<>();
+        for (TransferRequest leg : legs) {
+            cardIds.add(leg.getFromCardId());
+            cardIds.add(leg.getToCardId());
+        }
+        Map<Long, Card> cards = new HashMap<>();
+        for (Card card : cardRepository.findAllByIdForUpdate(cardIds)) {
+            // Карты заблокированы целиком, поэтому слоты "горячих" карт сразу переносятся в баланс
+            if (card.isHot()) {
+                hotCardService.compact(card);
+            }
+            cards.put(card.getId(), card);
+        }
+        // Несвернутые записи журнала входят в доступный баланс; в режиме LEDGER части пакета
+        // дополняют их, а записи журнала вставляются вместе со строками transactions (saveLegs)
+        Map<Long, BigDecimal> pendingAmounts = transferStrategy == TransferStrategy.LEDGER
+                ? new HashMap<>(ledgerService.getPendingAmounts(cardIds))
+                : Map.of();
+
+        List<BatchTransferResponse.LegResult> results = new ArrayList<>(legs.size());
+        for (int i = 0; i < legs.size(); i++) {
+            TransferRequest leg = legs.get(i);
+            String error = applyLeg(userOfLeg.apply(i), leg, cards, pendingAmounts);
+
+            if (error == null) {
+                Card fromCard = cards.get(leg.getFromCardId());
+                Card toCard = cards.get(leg.getToCardId());
+                Transaction transaction = Transaction.builder()
+                        .fromCard(fromCard)
+                        .toCard(toCard)
+                        .amount(leg.getAmount())
+                        .status(Transaction.TransactionStatus.SUCCESS)
+                        .build();
+                transactions.add(transaction);
+                events.add(new TransferCompletedEvent(this, transaction, fromCard, toCard, leg.getAmount()));
+            }
+
+            results.add(new BatchTransferResponse.LegResult(i, leg.getFromCardId(), leg.getToCardId(),
+                    leg.getAmount(),
+                    error == null ? BatchTransferResponse.LegStatus.SUCCESS : BatchTransferResponse.LegStatus.FAILED,
+                    error));
+        }
+        return results;
+    }
+
+    // Возвращает текст ошибки либо null, если часть перевода применена к балансам
+    private String applyLeg(User user, TransferRequest leg, Map<Long, Card> cards, Map<Long, BigDecimal> pendingAmounts) {
+        try {
+            validateTransferRequest(leg.getFromCardId(), leg.getToCardId(), leg.getAmount());
+
+            Card fromCard = cards.get(leg.getFromCardId());
+            Card toCard = cards.get(leg.getToCardId());
+            if (fromCard == null || toCard == null) {
+                throw new CardNotFoundException("Card not found with id: "
+                        + (fromCard == null ? leg.getFromCardId() : leg.getToCardId()));
+            }
+            BigDecimal fromPending = pendingAmounts.getOrDefault(fromCard.getId(), BigDecimal.ZERO);
+            validateTransfer(user, fromCard, toCard, leg.getAmount(), fromCard.getBalance().add(fromPending));
+
+            if (transferStrategy == TransferStrategy.LEDGER) {
+                pendingAmounts.put(fromCard.getId(), fromPending.subtract(leg.getAmount()));
+                pendingAmounts.merge(toCard.getId(), leg.getAmount(), BigDecimal::add);
+            } else {
+                fromCard.setBalance(fromCard.getBalance().subtract(leg.getAmount()));
+                toCard.setBalance(toCard.getBalance().add(leg.getAmount()));
+            }
+            return null;
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private void saveLegs(List<Transaction> transactions) {
+        transactionService.saveAllInBatch(transactions);
+        if (transferStrategy == TransferStrategy.LEDGER) {
+            ledgerService.recordTransfers(transactions);
+        }
+    }
+
+    private void validateTransferRequest(Long fromCardId, Long toCardId, BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+
+        if (fromCardId.equals(toCardId)) {
+            throw new IllegalArgumentException("Cannot transfer to the same card");
+        }
+    }
+
+    private void validateTransfer(User user, Card fromCard, Card toCard, BigDecimal amount,
+                                  BigDecimal availableBalance) {
+        // Проверяем, что обе карты принадлежат пользователю
+        if (!fromCard.getUser().getId().equals(user.getId()) ||
+                !toCard.getUser().getId().equals(user.getId())) {
+            throw new UnauthorizedAccessException("You can only transfer between your own cards");
+        }
+
+        if (!fromCard.isActive()) {
+            throw new IllegalStateException("Source card is not active");
+        }
+
+        if (!toCard.isActive()) {
+            throw new IllegalStateException("Destination card is not active");
+        }
+
+        if (availableBalance.compareTo(amount) < 0) {
+            throw new InsufficientBalanceException("Insufficient balance for transfer");
+        }
+    }
+
+    // События публикуются только после коммита, чтобы получатели не увидели откатанный перевод
+    private void publishAfterCommit(List<TransferCompletedEvent> events) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            events.forEach(eventPublisher::publishEvent);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                events.forEach(eventPublisher::publishEvent);
+            }
+        });
+    }
+
+    private Card[] loadCards(Long fromCardId, Long toCardId) {
+        // Без блокировок: конфликт обнаружится по версии при коммите и перевод будет повторен
+        return new Card[]{findCard(fromCardId), findCard(toCardId)};
+    }
+
+    // Блокируем обе карты в порядке возрастания id, чтобы встречные переводы не взаимоблокировались
+    private Card[] lockCardsInOrder(Long fromCardId, Long toCardId) {
+        boolean fromFirst = fromCardId < toCardId;
+        Card first = lockCard(fromFirst ? fromCardId : toCardId);
+        Card second = lockCard(fromFirst ? toCardId : fromCardId);
+        return fromFirst ? new Card[]{first, second} : new Card[]{second, first};
+    }
+
+    private Card lockCard(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Card not found with id: " + cardId));
+    }
+
+    private Card findCard(Long cardId) {
+        return cardRepository.findById(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Card not found with id: " + cardId));
+    }
+
     public String getMaskedCardNumber(String encryptedCardNumber) {
+        byte[] decrypted = null;
         try {
-            String decrypted = encryptionService.decrypt(encryptedCardNumber);
-            if (decrypted != null && decrypted.length() >= 4) {
-                return "**** **** **** " + decrypted.substring(decrypted.length() - 4);
+            // Номер не превращается в строку целиком: нужны только последние 4 цифры
+            decrypted = encryptionService.decryptToBytes(encryptedCardNumber);
+            if (decrypted != null && decrypted.length >= 4) {
+                return "**** **** **** " + new String(decrypted, decrypted.length - 4, 4, StandardCharsets.UTF_8);
             }
             return "**** **** **** ****";
         } catch (Exception e) {
             log.warn("Error decrypting card number for masking: {}", e.getMessage());
             return "**** **** **** ****";
+        } finally {
+            if (decrypted != null) {
+                Arrays.fill(decrypted, (byte) 0);
+            }
         }
     }
 
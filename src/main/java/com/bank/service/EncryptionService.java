@@ -1,56 +1,219 @@
 package com.bank.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.bank.config.EncryptionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
+// Шифрование AES-GCM со случайным IV: формат "<id ключа>:" + base64(iv | шифртекст | тег).
+// Расшифровка выбирает ключ по префиксу, поэтому во время ротации читаются значения под любым ключом.
+// Значения без префикса записаны прежним AES-ECB ключом v1
 @Service
 public class EncryptionService {
 
-    private final String encryptionKey;
-    private final SecretKeySpec secretKey;
+    public static final String LEGACY_KEY_ID = "v1";
 
-    public EncryptionService(@Value("${app.encryption.key:bank-encryption-key-32-chars-long!}") String encryptionKey) {
-        this.encryptionKey = encryptionKey;
-        this.secretKey = getSecretKey();
+    private static final String ALGORITHM = "AES";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String LEGACY_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final char KEY_ID_SEPARATOR = ':';
+    // Без символов Base64 и шаблонов LIKE: префикс однозначно отделяется и ищется в SQL
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9-]+");
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final Map<String, SecretKeySpec> keys;
+    private final String activeKeyId;
+    private final SecretKeySpec activeKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Cipher не потокобезопасен: каждый поток один раз получает свои экземпляры и переиспользует их.
+    // GCM инициализируется заново на каждый вызов - IV не может повторяться
+    private final ThreadLocal<Cipher> gcmCipher;
+    private final ThreadLocal<Cipher> legacyDecryptCipher;
+
+    @Autowired
+    public EncryptionService(EncryptionProperties properties) {
+        this(keyring(properties), properties.getActiveKeyId());
     }
 
-    private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    public EncryptionService(String encryptionKey) {
+        this(Map.of(LEGACY_KEY_ID, encryptionKey), LEGACY_KEY_ID);
+    }
 
-    private SecretKeySpec getSecretKey() {
+    public EncryptionService(Map<String, String> encryptionKeys, String activeKeyId) {
+        this.keys = new LinkedHashMap<>();
+        encryptionKeys.forEach((keyId, key) -> {
+            if (!KEY_ID_PATTERN.matcher(keyId).matches()) {
+                throw new IllegalArgumentException("Invalid encryption key id: " + keyId);
+            }
+            this.keys.put(keyId, getSecretKey(key));
+        });
+        if (!this.keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("Active encryption key is not configured: " + activeKeyId);
+        }
+        this.activeKeyId = activeKeyId;
+        this.activeKey = this.keys.get(activeKeyId);
+        this.gcmCipher = ThreadLocal.withInitial(() -> createCipher(TRANSFORMATION));
+        this.legacyDecryptCipher = ThreadLocal.withInitial(this::createLegacyDecryptCipher);
+    }
+
+    private static Map<String, String> keyring(EncryptionProperties properties) {
+        Map<String, String> keyring = new LinkedHashMap<>();
+        keyring.put(LEGACY_KEY_ID, properties.getKey());
+        properties.getKeys().forEach((keyId, key) -> {
+            if (keyring.containsKey(keyId) && !keyring.get(keyId).equals(key)) {
+                throw new IllegalArgumentException("Encryption key " + keyId + " is configured twice");
+            }
+            keyring.put(keyId, key);
+        });
+        return keyring;
+    }
+
+    private static SecretKeySpec getSecretKey(String encryptionKey) {
         byte[] keyBytes = new byte[32];
-        byte[] originalBytes = encryptionKey.getBytes();
+        byte[] originalBytes = encryptionKey.getBytes(StandardCharsets.UTF_8);
         System.arraycopy(originalBytes, 0, keyBytes, 0, Math.min(originalBytes.length, keyBytes.length));
         return new SecretKeySpec(keyBytes, ALGORITHM);
     }
 
+    private Cipher createCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error initializing cipher", e);
+        }
+    }
+
+    private Cipher createLegacyDecryptCipher() {
+        SecretKeySpec legacyKey = keys.get(LEGACY_KEY_ID);
+        if (legacyKey == null) {
+            throw new IllegalStateException("Legacy encryption key " + LEGACY_KEY_ID + " is not configured");
+        }
+        try {
+            Cipher cipher = createCipher(LEGACY_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error initializing cipher", e);
+        }
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
     public String encrypt(String data) {
+        if (data == null) return null;
+
+        return encryptWithActiveKey(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String decrypt(String encryptedData) {
+        if (encryptedData == null) return null;
+
+        return new String(decryptToBytes(encryptedData), StandardCharsets.UTF_8);
+    }
+
+    // Открытый текст без промежуточной строки: вызывающий код может затереть массив после использования
+    public byte[] decryptToBytes(String encryptedData) {
+        if (encryptedData == null) return null;
+
+        int separator = encryptedData.indexOf(KEY_ID_SEPARATOR);
+        SecretKeySpec key = null;
+        if (separator >= 0) {
+            key = keys.get(encryptedData.substring(0, separator));
+            if (key == null) {
+                throw new RuntimeException("Error decrypting data: unknown key id " + encryptedData.substring(0, separator));
+            }
+        }
+
+        byte[] decodedBytes;
+        try {
+            decodedBytes = Base64.getDecoder().decode(encryptedData.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Error decrypting data", e);
+        }
+        return key == null ? decryptLegacyBytes(decodedBytes) : decryptBytes(key, decodedBytes);
+    }
+
+    public boolean isEncryptedWithActiveKey(String encryptedData) {
+        return encryptedData != null && encryptedData.startsWith(activeKeyId + KEY_ID_SEPARATOR);
+    }
+
+    // Перешифровка активным ключом; открытый текст затирается сразу после использования
+    public String reEncrypt(String encryptedData) {
+        byte[] decrypted = decryptToBytes(encryptedData);
+        if (decrypted == null) return null;
+
+        try {
+            return encryptWithActiveKey(decrypted);
+        } finally {
+            Arrays.fill(decrypted, (byte) 0);
+        }
+    }
+
+    private String encryptWithActiveKey(byte[] data) {
+        return activeKeyId + KEY_ID_SEPARATOR + Base64.getEncoder().encodeToString(encryptBytes(data));
+    }
+
+    // Двоичный формат без идентификатора ключа: iv | шифртекст | тег под активным ключом
+    public byte[] encryptBytes(byte[] data) {
         try {
             if (data == null) return null;
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+
+            Cipher cipher = gcmCipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, activeKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+
+            byte[] result = Arrays.copyOf(iv, IV_LENGTH + cipher.getOutputSize(data.length));
+            cipher.doFinal(data, 0, data.length, result, IV_LENGTH);
+            return result;
         } catch (Exception e) {
+            gcmCipher.remove();
             throw new RuntimeException("Error encrypting data", e);
         }
     }
 
-    public String decrypt(String encryptedData) {
+    public byte[] decryptBytes(byte[] encryptedData) {
+        return decryptBytes(activeKey, encryptedData);
+    }
+
+    private byte[] decryptBytes(SecretKeySpec key, byte[] encryptedData) {
         try {
             if (encryptedData == null) return null;
+            if (encryptedData.length < IV_LENGTH + TAG_LENGTH_BITS / 8) {
+                throw new IllegalArgumentException("Encrypted data is too short");
+            }
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decodedBytes = Base64.getDecoder().decode(encryptedData);
-            byte[] decryptedBytes = cipher.doFinal(decodedBytes);
-            return new String(decryptedBytes);
+            Cipher cipher = gcmCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, encryptedData, 0, IV_LENGTH));
+            return cipher.doFinal(encryptedData, IV_LENGTH, encryptedData.length - IV_LENGTH);
+        } catch (Exception e) {
+            // После ошибки состояние экземпляра не гарантировано - поток получит новый
+            gcmCipher.remove();
+            throw new RuntimeException("Error decrypting data", e);
+        }
+    }
+
+    private byte[] decryptLegacyBytes(byte[] encryptedData) {
+        try {
+            return legacyDecryptCipher.get().doFinal(encryptedData);
         } catch (Exception e) {
+            legacyDecryptCipher.remove();
             throw new RuntimeException("Error decrypting data", e);
         }
     }
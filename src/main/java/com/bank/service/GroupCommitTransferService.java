@@ -0,0 +1,125 @@
+package com.bank.service;
+
+import com.bank.dto.BatchTransferResponse;
+import com.bank.dto.TransferCommand;
+import com.bank.dto.TransferRequest;
+import com.bank.entity.User;
+import com.bank.exception.TransferQueueFullException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Асинхронные переводы: запросы копятся в ограниченной очереди, один поток забирает их группами
+// и проводит каждую группу одной транзакцией. Клиент получает ответ после коммита своей группы
+@Slf4j
+@Service
+public class GroupCommitTransferService {
+
+    private final CardService cardService;
+    private final MonitoringService monitoringService;
+    private final BlockingQueue<PendingTransfer> queue;
+    private final int maxGroupSize;
+    private final Thread committer;
+
+    private volatile boolean running;
+
+    public GroupCommitTransferService(CardService cardService,
+                                      MonitoringService monitoringService,
+                                      @Value("${app.transfer.group-commit.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${app.transfer.group-commit.max-group-size:200}") int maxGroupSize) {
+        this.cardService = cardService;
+        this.monitoringService = monitoringService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+        this.committer = new Thread(this::runCommitter, "transfer-group-committer");
+        this.committer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        committer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        committer.interrupt();
+        committer.join(TimeUnit.SECONDS.toMillis(5));
+
+        List<PendingTransfer> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.getFuture()
+                .completeExceptionally(new IllegalStateException("Transfer pipeline stopped")));
+    }
+
+    // Очередь ограничена: при переполнении запрос отклоняется сразу, а не копит задержку
+    public CompletableFuture<BatchTransferResponse.LegResult> submit(User user, TransferRequest request) {
+        PendingTransfer pending = new PendingTransfer(new TransferCommand(user, request), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            monitoringService.recordTransferQueueRejected();
+            throw new TransferQueueFullException("Transfer queue is full, retry later");
+        }
+        monitoringService.recordTransferQueueDepth(queue.size());
+        return pending.getFuture();
+    }
+
+    private void runCommitter() {
+        List<PendingTransfer> group = new ArrayList<>(maxGroupSize);
+        while (running) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Все, что накопилось за время предыдущего коммита, уходит одной группой
+            queue.drainTo(group, maxGroupSize - 1);
+            monitoringService.recordTransferQueueDepth(queue.size());
+
+            commit(group);
+            group.clear();
+        }
+    }
+
+    private void commit(List<PendingTransfer> group) {
+        long startTime = System.nanoTime();
+        try {
+            List<BatchTransferResponse.LegResult> results = cardService.transferGroup(
+                    group.stream().map(PendingTransfer::getCommand).toList());
+
+            long commitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            int failed = (int) results.stream()
+                    .filter(result -> result.getStatus() != BatchTransferResponse.LegStatus.SUCCESS)
+                    .count();
+            monitoringService.recordGroupCommit(group.size(), failed, commitMillis);
+
+            for (int i = 0; i < group.size(); i++) {
+                BatchTransferResponse.LegResult result = results.get(i);
+                group.get(i).getFuture().complete(new BatchTransferResponse.LegResult(0, result.getFromCardId(),
+                        result.getToCardId(), result.getAmount(), result.getStatus(), result.getError()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Group commit of {} transfers failed: {}", group.size(), e.getMessage());
+            group.forEach(pending -> pending.getFuture().completeExceptionally(e));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class PendingTransfer {
+        private final TransferCommand command;
+        private final CompletableFuture<BatchTransferResponse.LegResult> future;
+    }
+}
@@ -0,0 +1,157 @@
+package com.bank.service;
+
+import com.bank.entity.Card;
+import com.bank.entity.CardBalanceSlot;
+import com.bank.exception.CardNotFoundException;
+import com.bank.repository.CardBalanceSlotRepository;
+import com.bank.repository.CardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// "Горячие" карты: зачисления распределяются по слотам баланса вместо одной строки cards
+@Slf4j
+@Service
+public class HotCardService {
+
+    private final CardRepository cardRepository;
+    private final CardBalanceSlotRepository cardBalanceSlotRepository;
+    private final AuditService auditService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxSlots;
+    // id "горячих" карт по последним прочитанным строкам cards: перевод выбирает, блокировать ли
+    // получателя, без отдельного запроса balance_slots. Устаревший признак исправляется по строке,
+    // загруженной переводом, и при каждом проходе compactHotCards
+    private final Set<Long> hotCardIds = ConcurrentHashMap.newKeySet();
+
+    public HotCardService(CardRepository cardRepository,
+                          CardBalanceSlotRepository cardBalanceSlotRepository,
+                          AuditService auditService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.hot-card.max-slots:64}") int maxSlots) {
+        this.cardRepository = cardRepository;
+        this.cardBalanceSlotRepository = cardBalanceSlotRepository;
+        this.auditService = auditService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxSlots = maxSlots;
+    }
+
+    public boolean isHot(Long cardId) {
+        return hotCardIds.contains(cardId);
+    }
+
+    public void observe(Card card) {
+        if (card.isHot()) {
+            hotCardIds.add(card.getId());
+        } else {
+            hotCardIds.remove(card.getId());
+        }
+    }
+
+    // slots = 0 возвращает карту в обычный режим; накопленное в слотах переносится в баланс
+    @Transactional
+    public Card setBalanceSlots(Long cardId, int slots) {
+        if (slots < 0 || slots > maxSlots) {
+            throw new IllegalArgumentException("Balance slots must be between 0 and " + maxSlots);
+        }
+
+        Card card = cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Card not found with id: " + cardId));
+
+        compact(card);
+        cardBalanceSlotRepository.deleteByCardId(cardId);
+        for (int slot = 0; slot < slots; slot++) {
+            cardBalanceSlotRepository.save(CardBalanceSlot.builder()
+                    .card(card)
+                    .slot(slot)
+                    .balance(BigDecimal.ZERO)
+                    .build());
+        }
+        card.setBalanceSlots(slots);
+        observe(card);
+
+        auditService.logActivity("CARD_BALANCE_SLOTS_UPDATE",
+                String.format("Card %s balance slots set to %d", cardId, slots),
+                true, cardId.toString(), null, null);
+
+        log.info("Card {} balance slots set to {}", cardId, slots);
+        return card;
+    }
+
+    // Слот выбирается по хешу карты-источника: источник и так заблокирован, а разные источники
+    // попадают в разные слоты и не ждут друг друга
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void credit(Card card, Long sourceCardId, BigDecimal amount) {
+        int slot = Math.floorMod(Long.hashCode(sourceCardId), card.getBalanceSlots());
+        if (cardBalanceSlotRepository.addToSlot(card.getId(), slot, amount) == 0) {
+            // Строка карты не заблокирована: число слотов могли изменить после ее чтения.
+            // Повтор перевода перечитает карту с новым набором слотов
+            throw new ConcurrencyFailureException("Balance slot " + slot + " not found for card " + card.getId());
+        }
+    }
+
+    public BigDecimal getSlotBalance(Card card) {
+        return card.isHot() ? cardBalanceSlotRepository.sumByCardId(card.getId()) : BigDecimal.ZERO;
+    }
+
+    // Баланс вместе со слотами, прочитанный заново одним запросом; для незаблокированной карты
+    public BigDecimal getTotalBalance(Card card) {
+        return getTotalBalances(List.of(card.getId())).getOrDefault(card.getId(), card.getBalance());
+    }
+
+    public Map<Long, BigDecimal> getTotalBalances(Collection<Long> cardIds) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (CardBalanceSlotRepository.CardTotal total : cardBalanceSlotRepository.sumWithCardBalanceByCardIds(cardIds)) {
+            balances.put(total.getCardId(), total.getAmount());
+        }
+        return balances;
+    }
+
+    // Списание с заблокированной карты: слоты сворачиваются, только если основного баланса не хватает
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void debit(Card card, BigDecimal amount) {
+        if (card.getBalance().compareTo(amount) < 0) {
+            compact(card);
+        }
+        card.setBalance(card.getBalance().subtract(amount));
+    }
+
+    // Переносит слоты в Card.balance. Порядок блокировок: карта, затем ее слоты
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void compact(Card card) {
+        List<CardBalanceSlot> slots = cardBalanceSlotRepository.findByCardIdForUpdate(card.getId());
+        BigDecimal total = BigDecimal.ZERO;
+        for (CardBalanceSlot slot : slots) {
+            total = total.add(slot.getBalance());
+            slot.setBalance(BigDecimal.ZERO);
+        }
+        card.setBalance(card.getBalance().add(total));
+    }
+
+    @Scheduled(fixedDelayString = "${app.hot-card.compact-interval-ms:1000}",
+            initialDelayString = "${app.hot-card.compact-interval-ms:1000}")
+    public void compactHotCards() {
+        List<Long> currentHotCardIds = cardRepository.findHotCardIds();
+        hotCardIds.retainAll(currentHotCardIds);
+        hotCardIds.addAll(currentHotCardIds);
+        for (Long cardId : currentHotCardIds) {
+            // Каждая карта в своей транзакции: блокировка держится только на время переноса
+            transactionTemplate.executeWithoutResult(status -> cardRepository.findByIdForUpdate(cardId)
+                    .ifPresent(this::compact));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.bank.service;
+
+import com.bank.entity.IdempotencyRecord;
+import com.bank.exception.DuplicateIdempotencyKeyException;
+import com.bank.exception.IdempotencyKeyMismatchException;
+import com.bank.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final Duration ttl;
+
+    // Ответы, уже выданные этим узлом: повтор ключа обслуживается без обращения к БД
+    private final Cache<String, StoredResponse> responseCache;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.cache-size:100000}") long cacheSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.responseCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public static String transferFingerprint(Long fromCardId, Long toCardId, BigDecimal amount) {
+        return fromCardId + ":" + toCardId + ":" + amount.stripTrailingZeros().toPlainString();
+    }
+
+    public Optional<StoredResponse> findCached(String username, String key, String fingerprint) {
+        StoredResponse response = responseCache.getIfPresent(cacheKey(username, key));
+        if (response != null) {
+            checkFingerprint(response, key, fingerprint);
+        }
+        return Optional.ofNullable(response);
+    }
+
+    // Единственная вставка в транзакции операции: повторный ключ нарушает уникальный индекс,
+    // и вся операция откатывается до того, как будут взяты блокировки карт
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void register(String username, String key, String fingerprint, int status, String body) {
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .idempotencyKey(key)
+                .username(username)
+                .requestFingerprint(fingerprint)
+                .responseStatus(status)
+                .responseBody(body)
+                .expiresAt(LocalDateTime.now().plus(ttl))
+                .build();
+
+        try {
+            idempotencyRecordRepository.save(record);
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateIdempotencyKeyException("Idempotency key already used: " + key);
+        }
+    }
+
+    public void remember(String username, String key, StoredResponse response) {
+        responseCache.put(cacheKey(username, key), response);
+    }
+
+    // Медленный путь для ключей, обработанных другим узлом или до перезапуска
+    public Optional<StoredResponse> findStored(String username, String key, String fingerprint) {
+        Optional<StoredResponse> stored = idempotencyRecordRepository.findByUsernameAndIdempotencyKey(username, key)
+                .map(record -> new StoredResponse(record.getRequestFingerprint(),
+                        record.getResponseStatus(), record.getResponseBody()));
+
+        stored.ifPresent(response -> {
+            checkFingerprint(response, key, fingerprint);
+            remember(username, key, response);
+        });
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private void checkFingerprint(StoredResponse response, String key, String fingerprint) {
+        if (!response.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyMismatchException("Idempotency key " + key + " was used with a different request");
+        }
+    }
+
+    private String cacheKey(String username, String key) {
+        return username + ':' + key;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class StoredResponse {
+        private final String fingerprint;
+        private final int status;
+        private final String body;
+    }
+}
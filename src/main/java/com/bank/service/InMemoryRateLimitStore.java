@@ -0,0 +1,61 @@
+package com.bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final MonitoringService monitoringService;
+
+    // Ограниченное хранилище корзин. Корзина живет, пока не наполнится снова: полную корзину
+    // удалять можно без потери состояния. При превышении max-entries вытесняются редко используемые ключи
+    private final Cache<Key, TokenBucket> buckets;
+
+    public InMemoryRateLimitStore(MonitoringService monitoringService,
+                                  @Value("${app.rate-limit.max-entries:100000}") long maxEntries) {
+        this.monitoringService = monitoringService;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new UntilBucketRefilled())
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Decision tryAcquire(Key key, Limit limit, int permits) {
+        return buckets.get(key, bucketKey -> new TokenBucket(limit.capacity(), limit.period())).acquirePermits(permits);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.gauge-interval-ms:10000}")
+    public void publishStoreGauges() {
+        buckets.cleanUp();
+        monitoringService.recordRateLimitStore(buckets.estimatedSize(), buckets.stats().evictionCount());
+    }
+
+    // Срок записи пересчитывается при каждом обращении. Чтение предшествует списанию токена,
+    // поэтому к сроку добавляется один интервал пополнения - под токен, списываемый следом
+    private static class UntilBucketRefilled implements Expiry<Key, TokenBucket> {
+
+        @Override
+        public long expireAfterCreate(Key key, TokenBucket bucket, long currentTime) {
+            return bucket.nanosUntilFull() + bucket.getEmissionIntervalNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, TokenBucket bucket, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, bucket, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, TokenBucket bucket, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, bucket, currentTime);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Лимит на весь кластер через общую таблицу rate_limit_buckets. Узел не ходит в БД на каждый
+// запрос: он забирает из окна порцию разрешений (аренду) и расходует ее локально. Таблица выдает
+// не больше capacity разрешений на окно, поэтому лимит не превышается при любом числе узлов;
+// неизрасходованная аренда простаивающего ключа возвращается в таблицу при сверке.
+// Окна фиксированные и выровнены по настенным часам, поэтому часы узлов должны быть синхронизированы
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.rate-limit.store", havingValue = "jdbc")
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final String SELECT_FOR_UPDATE_SQL =
+            "SELECT window_start, granted FROM rate_limit_buckets WHERE bucket_key = ? FOR UPDATE";
+    private static final String INSERT_SQL =
+            "INSERT INTO rate_limit_buckets (bucket_key, window_start, window_end, granted) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE rate_limit_buckets SET window_start = ?, window_end = ?, granted = ? WHERE bucket_key = ?";
+    // Возврат только в то же окно: после его смены счетчик уже обнулен
+    private static final String RETURN_SQL =
+            "UPDATE rate_limit_buckets SET granted = granted - ? "
+                    + "WHERE bucket_key = ? AND window_start = ? AND granted >= ?";
+    private static final String PURGE_SQL =
+            "DELETE FROM rate_limit_buckets WHERE window_end <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MonitoringService monitoringService;
+    private final int leaseSize;
+    private final long idleMillis;
+    private final LongSupplier wallClock;
+    private final Cache<Key, Lease> leases;
+
+    public JdbcRateLimitStore(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              MonitoringService monitoringService,
+                              @Value("${app.rate-limit.jdbc.lease-size:10}") int leaseSize,
+                              @Value("${app.rate-limit.jdbc.reconcile-interval-ms:5000}") long idleMillis,
+                              @Value("${app.rate-limit.max-entries:100000}") long maxEntries) {
+        this(jdbcTemplate, transactionManager, monitoringService, leaseSize, idleMillis, maxEntries,
+                System::currentTimeMillis);
+    }
+
+    JdbcRateLimitStore(JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager,
+                       MonitoringService monitoringService,
+                       int leaseSize,
+                       long idleMillis,
+                       long maxEntries,
+                       LongSupplier wallClock) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Своя транзакция: учет лимита фиксируется независимо от транзакции вызывающего кода
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.monitoringService = monitoringService;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.idleMillis = idleMillis;
+        this.wallClock = wallClock;
+        // Вытесненная аренда теряет остаток до конца окна: лимит от этого только строже
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    @Override
+    public Decision tryAcquire(Key key, Limit limit, int permits) {
+        long now = wallClock.getAsLong();
+        long periodMillis = Math.max(1, limit.period().toMillis());
+        long windowStart = now - Math.floorMod(now, periodMillis);
+        long windowEnd = windowStart + periodMillis;
+        long resetNanos = TimeUnit.MILLISECONDS.toNanos(windowEnd - now);
+        Lease lease = leases.get(key, leaseKey -> new Lease(leaseKey.policy() + ':' + leaseKey.subject()));
+
+        // Запросы одного ключа на узле ждут друг друга только на время похода в БД за новой арендой
+        synchronized (lease) {
+            lease.lastUsedMillis = now;
+            if (lease.windowStart != windowStart) {
+                // Остаток прошлого окна не переносится: в таблице окно тоже сменится
+                lease.windowStart = windowStart;
+                lease.remaining = 0;
+                lease.unallocated = limit.capacity();
+                lease.exhausted = false;
+            }
+            if (lease.remaining < permits) {
+                // Окно исчерпано: до сверки или следующего окна отказ без запроса к БД.
+                // Повтор раньше конца окна возможен, если другие узлы вернут аренды
+                if (lease.exhausted) {
+                    return Decision.rejected(limit.capacity(), resetNanos, resetNanos);
+                }
+                int chunk = Math.max(leaseSizeFor(limit), permits - lease.remaining);
+                Grant grant = borrow(lease.bucketKey, windowStart, windowEnd, chunk, limit.capacity());
+                monitoringService.recordRateLimitLease(grant.permits());
+                lease.unallocated = grant.unallocated();
+                lease.remaining += grant.permits();
+                if (lease.remaining < permits) {
+                    // Недобранная часть остается в аренде для запросов поменьше
+                    lease.exhausted = grant.unallocated() == 0;
+                    return Decision.rejected(limit.capacity(), resetNanos, resetNanos);
+                }
+            }
+            lease.remaining -= permits;
+            // Остаток - оценка: своя аренда плюс не выданное таблицей на момент последнего займа
+            return Decision.allowed(limit.capacity(), lease.remaining + lease.unallocated, resetNanos);
+        }
+    }
+
+    // Возврат неизрасходованных аренд простаивающих ключей и удаление закрытых окон.
+    // Отметки об исчерпании сбрасываются: разрешения, возвращенные другими узлами, снова доступны
+    @Scheduled(fixedDelayString = "${app.rate-limit.jdbc.reconcile-interval-ms:5000}")
+    public void reconcile() {
+        long now = wallClock.getAsLong();
+        leases.asMap().forEach((key, lease) -> {
+            int unused;
+            long windowStart;
+            synchronized (lease) {
+                lease.exhausted = false;
+                if (now - lease.lastUsedMillis < idleMillis || lease.remaining == 0) {
+                    return;
+                }
+                unused = lease.remaining;
+                windowStart = lease.windowStart;
+                lease.remaining = 0;
+                leases.asMap().remove(key, lease);
+            }
+            jdbcTemplate.update(RETURN_SQL, unused, lease.bucketKey, windowStart, unused);
+        });
+
+        int purged = jdbcTemplate.update(PURGE_SQL, now);
+        if (purged > 0) {
+            log.debug("Purged {} closed rate limit windows", purged);
+        }
+    }
+
+    // Порция не больше десятой части лимита: один узел не выбирает окно целиком,
+    // а простаивающие аренды недодают другим узлам не больше leaseSize разрешений каждая
+    private int leaseSizeFor(Limit limit) {
+        return Math.max(1, Math.min(leaseSize, limit.capacity() / 10));
+    }
+
+    private Grant borrow(String bucketKey, long windowStart, long windowEnd, int chunk, int capacity) {
+        while (true) {
+            try {
+                Grant granted = transactionTemplate.execute(status -> {
+                    List<long[]> rows = jdbcTemplate.query(SELECT_FOR_UPDATE_SQL,
+                            (rs, rowNum) -> new long[]{rs.getLong("window_start"), rs.getLong("granted")},
+                            bucketKey);
+                    if (rows.isEmpty()) {
+                        int grant = Math.min(chunk, capacity);
+                        jdbcTemplate.update(INSERT_SQL, bucketKey, windowStart, windowEnd, grant);
+                        return new Grant(grant, capacity - grant);
+                    }
+
+                    long rowWindowStart = rows.get(0)[0];
+                    // Часы этого узла отстают: в уже закрытое для таблицы окно не выдаем
+                    if (rowWindowStart > windowStart) {
+                        return new Grant(0, 0);
+                    }
+                    long alreadyGranted = rowWindowStart == windowStart ? rows.get(0)[1] : 0;
+                    int grant = (int) Math.max(0, Math.min(chunk, capacity - alreadyGranted));
+                    if (grant > 0 || rowWindowStart != windowStart) {
+                        jdbcTemplate.update(UPDATE_SQL, windowStart, windowEnd, alreadyGranted + grant, bucketKey);
+                    }
+                    return new Grant(grant, capacity - alreadyGranted - grant);
+                });
+                return granted != null ? granted : new Grant(0, 0);
+            } catch (DuplicateKeyException e) {
+                // Строку ключа одновременно вставил другой узел: повтор прочитает ее под блокировкой
+                log.debug("Concurrent insert of rate limit bucket {}, retrying", bucketKey);
+            }
+        }
+    }
+
+    // permits - выданная порция, unallocated - сколько окна осталось в таблице после нее
+    private record Grant(int permits, long unallocated) {
+    }
+
+    // Аренда ключа на узле; поля меняются только под монитором самой аренды
+    private static final class Lease {
+        private final String bucketKey;
+        private long windowStart = Long.MIN_VALUE;
+        private int remaining;
+        private long unallocated;
+        private boolean exhausted;
+        private long lastUsedMillis;
+
+        private Lease(String bucketKey) {
+            this.bucketKey = bucketKey;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.bank.service;
+
+import com.bank.dto.LedgerReconciliationReport;
+import com.bank.entity.BalanceSnapshot;
+import com.bank.entity.Card;
+import com.bank.entity.LedgerEntry;
+import com.bank.entity.Transaction;
+import com.bank.repository.BalanceSnapshotRepository;
+import com.bank.repository.CardRepository;
+import com.bank.repository.LedgerEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class LedgerService {
+
+    private static final int RECONCILE_CHUNK = 500;
+    private static final String INSERT_ENTRY_SQL =
+            "INSERT INTO ledger_entries (card_id, transaction_id, entry_type, amount, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MonitoringService monitoringService;
+    private final TransactionTemplate transactionTemplate;
+    private final CardService.TransferStrategy transferStrategy;
+    private final long snapshotEvery;
+
+    private final AtomicLong lastReconciledSnapshotId = new AtomicLong();
+
+    public LedgerService(LedgerEntryRepository ledgerEntryRepository,
+                         BalanceSnapshotRepository balanceSnapshotRepository,
+                         CardRepository cardRepository,
+                         JdbcTemplate jdbcTemplate,
+                         MonitoringService monitoringService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.transfer.strategy:PESSIMISTIC}") CardService.TransferStrategy transferStrategy,
+                         @Value("${app.ledger.snapshot-every:100}") long snapshotEvery) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceSnapshotRepository = balanceSnapshotRepository;
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.monitoringService = monitoringService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transferStrategy = transferStrategy;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    // Двойная запись перевода: только вставки, строка карты-получателя не изменяется и не блокируется
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfer(Transaction transaction) {
+        ledgerEntryRepository.save(LedgerEntry.builder()
+                .card(transaction.getFromCard())
+                .transaction(transaction)
+                .entryType(LedgerEntry.EntryType.DEBIT)
+                .amount(transaction.getAmount().negate())
+                .build());
+        ledgerEntryRepository.save(LedgerEntry.builder()
+                .card(transaction.getToCard())
+                .transaction(transaction)
+                .entryType(LedgerEntry.EntryType.CREDIT)
+                .amount(transaction.getAmount())
+                .build());
+    }
+
+    // То же для пакета переводов, сохраненного TransactionService.saveAllInBatch (id уже заполнены):
+    // по две записи на перевод одним JDBC-батчем
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(List<Transaction> transactions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> entries = new ArrayList<>(transactions.size() * 2);
+        for (Transaction transaction : transactions) {
+            entries.add(new Object[]{transaction.getFromCard().getId(), transaction.getId(),
+                    LedgerEntry.EntryType.DEBIT.name(), transaction.getAmount().negate(), now});
+            entries.add(new Object[]{transaction.getToCard().getId(), transaction.getId(),
+                    LedgerEntry.EntryType.CREDIT.name(), transaction.getAmount(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, entries);
+    }
+
+    // Баланс = материализованный баланс карты + записи, еще не свернутые в снимок
+    public BigDecimal getBalance(Card card) {
+        return card.getBalance().add(getPendingAmount(card.getId()));
+    }
+
+    public BigDecimal getPendingAmount(Long cardId) {
+        return ledgerEntryRepository.sumPending(cardId).getAmount();
+    }
+
+    public Map<Long, BigDecimal> getPendingAmounts(Collection<Long> cardIds) {
+        Map<Long, BigDecimal> pending = new HashMap<>();
+        for (LedgerEntryRepository.CardTotal total : ledgerEntryRepository.sumPendingByCard(cardIds)) {
+            pending.put(total.getCardId(), total.getAmount());
+        }
+        return pending;
+    }
+
+    // Проверка средств и свертка для карты-источника, заблокированной вызывающим кодом
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal getBalanceForDebit(Card card) {
+        LedgerEntryRepository.EntryTotal pending = ledgerEntryRepository.sumPending(card.getId());
+        if (pending.getEntries() >= snapshotEvery && fold(card)) {
+            pending = ledgerEntryRepository.sumPending(card.getId());
+        }
+        return card.getBalance().add(pending.getAmount());
+    }
+
+    // Переносит закоммиченные несвернутые записи в баланс карты и сохраняет снимок.
+    // Записи отмечаются id снимка, а не границей по id или времени: запись, вставленная раньше,
+    // но закоммиченная после свертки, не отмечена и войдет в следующий снимок. Карта должна быть заблокирована
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean fold(Card card) {
+        BigDecimal openingBalance = card.getBalance();
+        BalanceSnapshot snapshot = balanceSnapshotRepository.save(BalanceSnapshot.builder()
+                .card(card)
+                .fromEntryId(0L)
+                .lastEntryId(0L)
+                .entryCount(0L)
+                .openingBalance(openingBalance)
+                .balance(openingBalance)
+                .build());
+        if (ledgerEntryRepository.markFolded(card.getId(), snapshot.getId()) == 0) {
+            balanceSnapshotRepository.delete(snapshot);
+            return false;
+        }
+
+        // Сумма ровно тех записей, которые отметил UPDATE выше
+        LedgerEntryRepository.SnapshotWindow window = ledgerEntryRepository.sumBySnapshot(snapshot.getId());
+        card.setBalance(openingBalance.add(window.getAmount()));
+        snapshot.setFromEntryId(window.getFirstEntryId());
+        snapshot.setLastEntryId(window.getLastEntryId());
+        snapshot.setEntryCount(window.getEntries());
+        snapshot.setBalance(card.getBalance());
+
+        log.debug("Folded {} ledger entries of card {} into balance {}", window.getEntries(), card.getId(), card.getBalance());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ledger.fold-interval-ms:5000}",
+            initialDelayString = "${app.ledger.fold-interval-ms:5000}")
+    public int foldPendingEntries() {
+        int folded = 0;
+        for (Long cardId : ledgerEntryRepository.findCardIdsWithPendingEntries()) {
+            // Каждая карта в своей короткой транзакции, чтобы не держать много блокировок сразу
+            Boolean result = transactionTemplate.execute(status -> cardRepository.findByIdForUpdate(cardId)
+                    .map(this::fold)
+                    .orElse(false));
+            if (Boolean.TRUE.equals(result)) {
+                folded++;
+            }
+        }
+        if (folded > 0) {
+            log.info("Folded pending ledger entries of {} cards", folded);
+        }
+        return folded;
+    }
+
+    // В других режимах журнал не пополняется: оставшиеся записи переносятся в балансы сразу
+    @EventListener(ApplicationReadyEvent.class)
+    public void foldOnStartup() {
+        if (transferStrategy != CardService.TransferStrategy.LEDGER) {
+            foldPendingEntries();
+        }
+    }
+
+    @Scheduled(cron = "${app.ledger.reconciliation-cron:0 */15 * * * ?}")
+    public void reconcileNewSnapshots() {
+        reconcile(false);
+    }
+
+    // Сверяет баланс каждой карты с пересчетом от opening_balance по строкам transactions - без
+    // ledger_entries, поэтому видны и потерянные, задвоенные или не свернутые записи журнала.
+    // full - все карты, иначе только карты со снимками после прошлой сверки
+    public LedgerReconciliationReport reconcile(boolean full) {
+        long afterId = lastReconciledSnapshotId.get();
+        long lastId = balanceSnapshotRepository.findMaxId();
+
+        List<LedgerReconciliationReport.Mismatch> mismatches = new ArrayList<>();
+        int checked = 0;
+        if (full) {
+            List<Long> cardIds = cardRepository.findIdsAfter(0L, PageRequest.of(0, RECONCILE_CHUNK));
+            while (!cardIds.isEmpty()) {
+                checked += checkBalances(cardIds, mismatches);
+                cardIds = cardRepository.findIdsAfter(cardIds.get(cardIds.size() - 1), PageRequest.of(0, RECONCILE_CHUNK));
+            }
+        } else {
+            List<Long> cardIds = balanceSnapshotRepository.findCardIdsWithSnapshotsBetween(afterId, lastId);
+            for (int from = 0; from < cardIds.size(); from += RECONCILE_CHUNK) {
+                checked += checkBalances(cardIds.subList(from, Math.min(from + RECONCILE_CHUNK, cardIds.size())),
+                        mismatches);
+            }
+        }
+
+        lastReconciledSnapshotId.accumulateAndGet(lastId, Math::max);
+        monitoringService.recordLedgerReconciliation(checked, mismatches.size());
+
+        return new LedgerReconciliationReport(LocalDateTime.now(), checked, mismatches);
+    }
+
+    private int checkBalances(List<Long> cardIds, List<LedgerReconciliationReport.Mismatch> mismatches) {
+        List<CardRepository.BalanceCheck> checks = cardRepository.findBalanceChecks(cardIds);
+        for (CardRepository.BalanceCheck check : checks) {
+            if (check.getBalance().compareTo(check.getExpectedBalance()) != 0) {
+                mismatches.add(new LedgerReconciliationReport.Mismatch(check.getCardId(),
+                        check.getBalance(), check.getExpectedBalance()));
+                log.error("Balance of card {} does not match transactions: balance {}, transactions {}",
+                        check.getCardId(), check.getBalance(), check.getExpectedBalance());
+            }
+        }
+        return checks.size();
+    }
+}
@@ -1,58 +1,308 @@
 package com.bank.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
+// Метрики в реестре Micrometer: счетчики на DoubleAdder без общей точки конкуренции, теги
+// outcome/route/policy, выгрузка через /actuator/prometheus. Прежние плоские имена (login.success и т.п.)
+// сохранены для getMetric и /api/admin/monitoring/metrics и вычисляются из метрик реестра
 @Slf4j
 @Service
 public class MonitoringService {
 
-    private final ConcurrentHashMap<String, AtomicLong> metrics = new ConcurrentHashMap<>();
+    // Границы гистограмм лимитов (верхние, включительно): доля израсходованного лимита в процентах
+    // у разрешенных запросов и Retry-After в секундах у отклоненных
+    private static final double[] RATE_LIMIT_USAGE_BUCKETS = {50, 75, 90, 100};
+    private static final double[] RATE_LIMIT_RETRY_AFTER_BUCKETS = {1, 10, 60, 600, 3600};
+    // Перцентили задержки запросов считаются в приложении (HdrHistogram Micrometer, скользящее окно)
+    private static final double[] LATENCY_PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String TOTAL_PHASE = "total";
 
+    private final MeterRegistry registry;
+
+    // Плоское имя -> значение; наполняется при регистрации метрик, record* к нему не обращаются
+    private final ConcurrentHashMap<String, LongSupplier> legacyMetrics = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RateLimitMeters> rateLimitMeters = new ConcurrentHashMap<>();
+    // Операция -> таймеры по RequestLatency.Phase.ordinal(), последний элемент - total
+    private final ConcurrentHashMap<String, Timer[]> latencyTimers = new ConcurrentHashMap<>();
+
+    private final Counter loginSuccess;
+    private final Counter loginFailure;
+    private final Counter userCacheHits;
+    private final Counter userCacheMisses;
+    private final AtomicLong passwordCost;
+    private final Counter passwordUpgraded;
+    private final Counter passwordRejected;
+    private final Timer passwordQueueWait;
+    private final Timer passwordHash;
+    private final AtomicLong passwordQueueWaitLast;
+    private final AtomicLong passwordHashLast;
+    private final Counter transfersSingle;
+    private final Counter transfersBatch;
+    private final Counter transfersGroup;
+    private final Counter transferBatches;
+    private final Counter transferRetries;
+    private final Counter transferRetried;
+    private final Counter transferRetryExhausted;
+    private final AtomicLong transferQueueDepth;
+    private final Counter transferQueueRejected;
+    private final DistributionSummary transferGroupSize;
+    private final AtomicLong transferGroupSizeLast;
+    private final AtomicLong transferGroupSizePeak;
+    private final Timer transferGroupCommit;
+    private final AtomicLong transferGroupCommitLast;
+    private final Counter cardBlockRequests;
+    private final Counter ledgerReconciledCards;
+    private final Counter ledgerReconciliationMismatches;
+    private final Counter cardReEncrypted;
+    private final Counter apiRequests;
+    private final AtomicLong rateLimitStoreEntries;
+    private final AtomicLong rateLimitStoreEvictions;
+    private final Counter rateLimitLeaseBorrows;
+    private final Counter rateLimitLeasePermits;
+
+    // Без Spring: собственный реестр в памяти (тесты, отдельные JVM)
     public MonitoringService() {
-        // Инициализация метрик
-        metrics.put("login.success", new AtomicLong(0));
-        metrics.put("login.failure", new AtomicLong(0));
-        metrics.put("transfer.completed", new AtomicLong(0));
-        metrics.put("card.block.requests", new AtomicLong(0));
-        metrics.put("api.requests", new AtomicLong(0));
+        this(new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public MonitoringService(MeterRegistry registry) {
+        this.registry = registry;
+
+        loginSuccess = counter("login.success", "auth.login", "outcome", "success");
+        loginFailure = counter("login.failure", "auth.login", "outcome", "failure");
+        userCacheHits = counter("auth.user.cache.hits", "auth.user.cache", "outcome", "hit");
+        userCacheMisses = counter("auth.user.cache.misses", "auth.user.cache", "outcome", "miss");
+        passwordCost = gauge("auth.password.cost", "auth.password.cost");
+        passwordUpgraded = counter("auth.password.upgraded", "auth.password.upgraded");
+        passwordRejected = counter("auth.password.rejected", "auth.password.rejected");
+        passwordQueueWait = Timer.builder("auth.password.queue.wait").register(registry);
+        passwordHash = Timer.builder("auth.password.hash").register(registry);
+        passwordQueueWaitLast = gauge("auth.password.queue.wait.ms.last", "auth.password.queue.wait.last");
+        passwordHashLast = gauge("auth.password.hash.ms.last", "auth.password.hash.last");
+        legacyMetrics.put("auth.password.hashes", passwordHash::count);
+        legacyMetrics.put("auth.password.queue.wait.ms.total",
+                () -> (long) passwordQueueWait.totalTime(TimeUnit.MILLISECONDS));
+        legacyMetrics.put("auth.password.hash.ms.total",
+                () -> (long) passwordHash.totalTime(TimeUnit.MILLISECONDS));
+
+        transfersSingle = Counter.builder("transfer.completed").tags("route", "single").register(registry);
+        transfersBatch = Counter.builder("transfer.completed").tags("route", "batch").register(registry);
+        transfersGroup = Counter.builder("transfer.completed").tags("route", "group").register(registry);
+        legacyMetrics.put("transfer.completed",
+                () -> (long) (transfersSingle.count() + transfersBatch.count() + transfersGroup.count()));
+        transferBatches = counter("transfer.batches", "transfer.batches");
+        transferRetries = counter("transfer.retries", "transfer.retries");
+        transferRetried = counter("transfer.retried", "transfer.retried", "outcome", "retried");
+        transferRetryExhausted = counter("transfer.retry.exhausted", "transfer.retried", "outcome", "exhausted");
+        transferQueueDepth = gauge("transfer.queue.depth", "transfer.queue.depth");
+        transferQueueRejected = counter("transfer.queue.rejected", "transfer.queue.rejected");
+        transferGroupSize = DistributionSummary.builder("transfer.group.size").register(registry);
+        legacyMetrics.put("transfer.groups", transferGroupSize::count);
+        transferGroupSizeLast = gauge("transfer.group.size.last", "transfer.group.size.last");
+        // Максимум с запуска: max у DistributionSummary - только за последнее окно
+        transferGroupSizePeak = gauge("transfer.group.size.max", "transfer.group.size.peak");
+        transferGroupCommit = Timer.builder("transfer.group.commit").register(registry);
+        transferGroupCommitLast = gauge("transfer.group.commit.ms.last", "transfer.group.commit.last");
+        legacyMetrics.put("transfer.group.commit.ms.total",
+                () -> (long) transferGroupCommit.totalTime(TimeUnit.MILLISECONDS));
+
+        cardBlockRequests = counter("card.block.requests", "card.block.requests");
+        ledgerReconciledCards = counter("ledger.reconciled.cards", "ledger.reconciled.cards");
+        ledgerReconciliationMismatches = counter("ledger.reconciliation.mismatches",
+                "ledger.reconciliation.mismatches");
+        cardReEncrypted = counter("card.reencrypted", "card.reencrypted");
+        apiRequests = counter("api.requests", "api.requests");
+        rateLimitStoreEntries = gauge("ratelimit.store.entries", "ratelimit.store.entries");
+        rateLimitStoreEvictions = gauge("ratelimit.store.evictions", "ratelimit.store.evictions");
+        rateLimitLeaseBorrows = counter("ratelimit.lease.borrows", "ratelimit.lease.borrows");
+        rateLimitLeasePermits = counter("ratelimit.lease.permits", "ratelimit.lease.permits");
     }
 
     public void recordSuccessfulLogin(String username) {
-        metrics.get("login.success").incrementAndGet();
+        loginSuccess.increment();
         log.info("✅ Successful login for user: {}", username);
     }
 
     public void recordFailedLogin(String username) {
-        metrics.get("login.failure").incrementAndGet();
+        loginFailure.increment();
         log.warn("❌ Failed login attempt for user: {}", username);
     }
 
+    public void recordUserCacheLookup(boolean hit) {
+        (hit ? userCacheHits : userCacheMisses).increment();
+    }
+
+    // Среднее ожидание в очереди BCrypt = auth.password.queue.wait.ms.total / auth.password.hashes
+    public void recordPasswordHashing(long queueWaitMillis, long hashMillis) {
+        passwordQueueWait.record(queueWaitMillis, TimeUnit.MILLISECONDS);
+        passwordQueueWaitLast.set(queueWaitMillis);
+        passwordHash.record(hashMillis, TimeUnit.MILLISECONDS);
+        passwordHashLast.set(hashMillis);
+    }
+
+    public void recordPasswordHashingCost(int cost) {
+        passwordCost.set(cost);
+    }
+
+    public void recordPasswordHashUpgraded(String username) {
+        passwordUpgraded.increment();
+        log.info("🔐 Password hash upgraded for user: {}", username);
+    }
+
+    public void recordPasswordHashingRejected() {
+        passwordRejected.increment();
+        log.warn("🔐 Password hashing pool is saturated, request rejected");
+    }
+
     public void recordTransfer(String fromUser, String toUser, BigDecimal amount) {
-        metrics.get("transfer.completed").incrementAndGet();
+        transfersSingle.increment();
         log.info("💰 Transfer completed: {} from {} to {}", amount, fromUser, toUser);
     }
 
+    public void recordBatchTransfer(String username, int succeeded, int failed) {
+        transfersBatch.increment(succeeded);
+        transferBatches.increment();
+        log.info("💰 Batch transfer by {}: {} legs completed, {} failed", username, succeeded, failed);
+    }
+
+    public void recordTransferRetries(int retries, boolean exhausted) {
+        if (retries > 0) {
+            transferRetries.increment(retries);
+            transferRetried.increment();
+        }
+        if (exhausted) {
+            transferRetryExhausted.increment();
+            log.warn("🔁 Transfer retries exhausted after {} retries", retries);
+        }
+    }
+
+    public void recordTransferQueueDepth(int depth) {
+        transferQueueDepth.set(depth);
+    }
+
+    public void recordTransferQueueRejected() {
+        transferQueueRejected.increment();
+        log.warn("⏳ Transfer queue is full, request rejected");
+    }
+
+    // Средняя задержка коммита группы = transfer.group.commit.ms.total / transfer.groups
+    public void recordGroupCommit(int groupSize, int failed, long commitMillis) {
+        transfersGroup.increment(groupSize - failed);
+        transferGroupSize.record(groupSize);
+        transferGroupSizeLast.set(groupSize);
+        transferGroupSizePeak.accumulateAndGet(groupSize, Math::max);
+        transferGroupCommit.record(commitMillis, TimeUnit.MILLISECONDS);
+        transferGroupCommitLast.set(commitMillis);
+    }
+
+    public void recordLedgerReconciliation(int checkedCards, int mismatches) {
+        ledgerReconciledCards.increment(checkedCards);
+        if (mismatches > 0) {
+            ledgerReconciliationMismatches.increment(mismatches);
+            log.error("📒 Ledger reconciliation found {} mismatched cards of {}", mismatches, checkedCards);
+        }
+    }
+
+    public void recordCardReEncryption(int rows) {
+        cardReEncrypted.increment(rows);
+    }
+
     public void recordCardBlockRequest(Long cardId, String username) {
-        metrics.get("card.block.requests").incrementAndGet();
+        cardBlockRequests.increment();
         log.info("🚫 Card block requested: card {} by user {}", cardId, username);
     }
 
     public void recordApiRequest() {
-        metrics.get("api.requests").incrementAndGet();
+        apiRequests.increment();
+    }
+
+    // Вытеснения по размеру и по истечению срока (наполненные корзины) - накопительно с запуска
+    public void recordRateLimitStore(long entries, long evictions) {
+        rateLimitStoreEntries.set(entries);
+        rateLimitStoreEvictions.set(evictions);
+    }
+
+    // Доля проверок, дошедших до БД = ratelimit.lease.borrows / api.requests
+    public void recordRateLimitLease(int permits) {
+        rateLimitLeaseBorrows.increment();
+        rateLimitLeasePermits.increment(permits);
+    }
+
+    // ratelimit.decisions{policy, outcome}, гистограммы ratelimit.usage{policy} (доля израсходованного
+    // лимита у разрешенных) и ratelimit.retry.after{policy} (у отклоненных). Плоские имена:
+    // ratelimit.<policy>.allowed / .rejected, ratelimit.<policy>.usage.le.<процент>,
+    // ratelimit.<policy>.retry-after.le.<секунды> (le.inf - сверх последней границы)
+    public void recordRateLimitDecision(String policy, RateLimitStore.Decision decision) {
+        RateLimitMeters meters = rateLimitMeters.computeIfAbsent(policy, this::registerRateLimitMeters);
+        if (decision.allowed()) {
+            meters.allowed().increment();
+            long used = decision.limit() - decision.remaining();
+            meters.usage().record(used * 100.0 / decision.limit());
+        } else {
+            meters.rejected().increment();
+            meters.retryAfter().record(decision.retryAfterSeconds());
+        }
+    }
+
+    // request.latency{operation, phase}: phase=total - весь запрос, остальные - время в фазе.
+    // Фазы, в которые запрос не заходил, не записываются, чтобы не занижать их перцентили
+    public void recordRequestLatency(String operation, RequestLatency latency) {
+        Timer[] timers = latencyTimers.computeIfAbsent(operation, this::registerLatencyTimers);
+        for (RequestLatency.Phase phase : RequestLatency.Phase.values()) {
+            long nanos = latency.getPhaseNanos(phase);
+            if (nanos > 0) {
+                timers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        timers[timers.length - 1].record(latency.getTotalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // операция -> фаза -> count, p50, p90, p99, p99.9, max (мс) для /api/admin/monitoring/latency
+    public Map<String, Map<String, Map<String, Double>>> getLatencySnapshot() {
+        Map<String, Map<String, Map<String, Double>>> snapshot = new LinkedHashMap<>();
+        latencyTimers.forEach((operation, timers) -> {
+            Map<String, Map<String, Double>> phases = new LinkedHashMap<>();
+            phases.put(TOTAL_PHASE, latencyStats(timers[timers.length - 1]));
+            for (RequestLatency.Phase phase : RequestLatency.Phase.values()) {
+                Timer timer = timers[phase.ordinal()];
+                if (timer.count() > 0) {
+                    phases.put(phase.getTag(), latencyStats(timer));
+                }
+            }
+            snapshot.put(operation, phases);
+        });
+        return snapshot;
     }
 
     public long getMetric(String metricName) {
-        AtomicLong metric = metrics.get(metricName);
-        return metric != null ? metric.get() : 0;
+        LongSupplier metric = legacyMetrics.get(metricName);
+        return metric != null ? metric.getAsLong() : 0;
     }
 
-    public ConcurrentHashMap<String, AtomicLong> getAllMetrics() {
-        return new ConcurrentHashMap<>(metrics);
+    public Map<String, Long> getAllMetrics() {
+        Map<String, Long> snapshot = new HashMap<>();
+        legacyMetrics.forEach((name, metric) -> snapshot.put(name, metric.getAsLong()));
+        return snapshot;
     }
 
     public void recordSystemHealth() {
@@ -65,4 +315,94 @@ public class MonitoringService {
                 maxMemory / (1024 * 1024),
                 memoryUsage);
     }
+
+    private Counter counter(String legacyName, String name, String... tags) {
+        Counter counter = Counter.builder(name).tags(tags).register(registry);
+        legacyMetrics.put(legacyName, () -> (long) counter.count());
+        return counter;
+    }
+
+    private AtomicLong gauge(String legacyName, String name) {
+        AtomicLong value = registry.gauge(name, new AtomicLong());
+        legacyMetrics.put(legacyName, value::get);
+        return value;
+    }
+
+    private RateLimitMeters registerRateLimitMeters(String policy) {
+        String prefix = "ratelimit." + policy;
+        RateLimitMeters meters = new RateLimitMeters(
+                counter(prefix + ".allowed", "ratelimit.decisions", "policy", policy, "outcome", "allowed"),
+                counter(prefix + ".rejected", "ratelimit.decisions", "policy", policy, "outcome", "rejected"),
+                DistributionSummary.builder("ratelimit.usage")
+                        .baseUnit("percent")
+                        .tags("policy", policy)
+                        .serviceLevelObjectives(RATE_LIMIT_USAGE_BUCKETS)
+                        .register(registry),
+                DistributionSummary.builder("ratelimit.retry.after")
+                        .baseUnit("seconds")
+                        .tags("policy", policy)
+                        .serviceLevelObjectives(RATE_LIMIT_RETRY_AFTER_BUCKETS)
+                        .register(registry));
+        registerBuckets(prefix + ".usage.le.", meters.usage(), RATE_LIMIT_USAGE_BUCKETS);
+        registerBuckets(prefix + ".retry-after.le.", meters.retryAfter(), RATE_LIMIT_RETRY_AFTER_BUCKETS);
+        return meters;
+    }
+
+    private Timer[] registerLatencyTimers(String operation) {
+        RequestLatency.Phase[] phases = RequestLatency.Phase.values();
+        Timer[] timers = new Timer[phases.length + 1];
+        for (RequestLatency.Phase phase : phases) {
+            timers[phase.ordinal()] = latencyTimer(operation, phase.getTag());
+        }
+        timers[phases.length] = latencyTimer(operation, TOTAL_PHASE);
+        return timers;
+    }
+
+    // Перцентили - для /api/admin/monitoring/latency, гистограмма - для histogram_quantile в Prometheus
+    private Timer latencyTimer(String operation, String phase) {
+        return Timer.builder("request.latency")
+                .tags("operation", operation, "phase", phase)
+                .publishPercentiles(LATENCY_PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Map<String, Double> latencyStats(Timer timer) {
+        HistogramSnapshot histogram = timer.takeSnapshot();
+        Map<String, Double> stats = new LinkedHashMap<>();
+        stats.put("count", (double) histogram.count());
+        for (ValueAtPercentile percentile : histogram.percentileValues()) {
+            String name = BigDecimal.valueOf(percentile.percentile()).movePointRight(2)
+                    .stripTrailingZeros().toPlainString();
+            stats.put("p" + name, percentile.value(TimeUnit.MILLISECONDS));
+        }
+        stats.put("max", histogram.max(TimeUnit.MILLISECONDS));
+        return stats;
+    }
+
+    // Плоские имена - по одной корзине, без накопления: разность соседних границ гистограммы
+    private void registerBuckets(String prefix, DistributionSummary summary, double[] bounds) {
+        for (int i = 0; i < bounds.length; i++) {
+            double bound = bounds[i];
+            double previous = i > 0 ? bounds[i - 1] : Double.NEGATIVE_INFINITY;
+            legacyMetrics.put(prefix + (long) bound,
+                    () -> countAtOrBelow(summary, bound) - countAtOrBelow(summary, previous));
+        }
+        double last = bounds[bounds.length - 1];
+        legacyMetrics.put(prefix + "inf", () -> summary.count() - countAtOrBelow(summary, last));
+    }
+
+    private static long countAtOrBelow(DistributionSummary summary, double bound) {
+        long count = 0;
+        for (CountAtBucket bucket : summary.takeSnapshot().histogramCounts()) {
+            if (bucket.bucket() <= bound) {
+                count = (long) bucket.count();
+            }
+        }
+        return count;
+    }
+
+    private record RateLimitMeters(Counter allowed, Counter rejected,
+                                   DistributionSummary usage, DistributionSummary retryAfter) {
+    }
 }
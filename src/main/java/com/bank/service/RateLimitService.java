@@ -1,121 +1,130 @@
 package com.bank.service;
 
-import lombok.RequiredArgsConstructor;
+import com.bank.config.RateLimitProperties;
+import com.bank.entity.User;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class RateLimitService {
 
-    private final CacheManager cacheManager;
-
-    private static final int MAX_REQUESTS_PER_MINUTE = 100;
-    private static final int MAX_LOGIN_ATTEMPTS_PER_HOUR = 5;
-    private static final int MAX_TRANSFERS_PER_DAY = 10;
-
-    public boolean isRateLimited(String key, RateLimitType type) {
-        String cacheKey = type + "_" + key;
-        Cache cache = cacheManager.getCache("rateLimit");
-
-        if (cache == null) {
-            return false;
-        }
-
-        RateLimitInfo rateLimitInfo = cache.get(cacheKey, RateLimitInfo.class);
-        if (rateLimitInfo == null) {
-            rateLimitInfo = new RateLimitInfo();
-            cache.put(cacheKey, rateLimitInfo);
-        }
-
-        return rateLimitInfo.isRateLimited(type);
+    // Политика попыток входа; учитывает AuthController, а не перехватчик
+    public static final String LOGIN_POLICY = "login";
+    // Пакет переводов учитывает CardController: по разрешению на каждую часть пакета
+    public static final String BATCH_TRANSFER_ROUTE = "/api/cards/transfers/batch";
+
+    private final RateLimitStore rateLimitStore;
+    private final MonitoringService monitoringService;
+    private final String defaultPolicy;
+    private final Map<String, RateLimitStore.Limit> limits = new HashMap<>();
+    private final List<CompiledRoute> routes;
+    private final Map<String, Map<String, String>> principalPolicies;
+
+    // Шаблон маршрута -> политика. Шаблонов конечное число (по одному на обработчик),
+    // поэтому сопоставление с routes выполняется один раз на шаблон
+    private final ConcurrentHashMap<String, String> policyByRoute = new ConcurrentHashMap<>();
+
+    public RateLimitService(RateLimitStore rateLimitStore,
+                            RateLimitProperties properties,
+                            MonitoringService monitoringService) {
+        this.rateLimitStore = rateLimitStore;
+        this.monitoringService = monitoringService;
+        this.defaultPolicy = properties.getDefaultPolicy();
+        properties.getPolicies().forEach((name, policy) ->
+                limits.put(name, new RateLimitStore.Limit(policy.getCapacity(), policy.getPeriod())));
+        this.routes = properties.getRoutes().stream()
+                .map(route -> new CompiledRoute(PathPatternParser.defaultInstance.parse(route.getPattern()),
+                        requirePolicy(route.getPolicy())))
+                .toList();
+        this.principalPolicies = Map.copyOf(properties.getPrincipals());
+        requirePolicy(defaultPolicy);
+        requirePolicy(LOGIN_POLICY);
+        principalPolicies.values().forEach(overrides -> overrides.values().forEach(this::requirePolicy));
+        log.info("Rate limit policies: {}, {} route rules, {} principal overrides",
+                limits.keySet(), routes.size(), principalPolicies.size());
     }
 
-    public void recordRequest(String key, RateLimitType type) {
-        String cacheKey = type + "_" + key;
-        Cache cache = cacheManager.getCache("rateLimit");
+    // Проверка и учет запроса одной атомарной операцией: между ними нет окна,
+    // в которое параллельные запросы проходят сверх лимита
+    public RateLimitStore.Decision tryAcquire(String key, String policy) {
+        return tryAcquire(key, policy, 1);
+    }
 
-        if (cache == null) {
-            return;
+    public RateLimitStore.Decision tryAcquire(String key, String policy, int permits) {
+        RateLimitStore.Decision decision;
+        try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.RATE_LIMIT)) {
+            decision = rateLimitStore.tryAcquire(new RateLimitStore.Key(policy, key), limits.get(policy), permits);
         }
+        monitoringService.recordRateLimitDecision(policy, decision);
+        return decision;
+    }
 
-        RateLimitInfo rateLimitInfo = cache.get(cacheKey, RateLimitInfo.class);
-        if (rateLimitInfo == null) {
-            rateLimitInfo = new RateLimitInfo();
-        }
+    // Учет запроса к маршруту. Политика по умолчанию считается по каждому маршруту отдельно;
+    // остальные (transfer) - одна корзина на все маршруты политики, иначе каждый маршрут
+    // давал бы пользователю еще один полный лимит. username - null для анонимных запросов
+    public RateLimitStore.Decision tryAcquireRoute(String subject, String routePattern, String username, int permits) {
+        String routePolicy = policyByRoute.computeIfAbsent(routePattern, this::matchRoute);
+        String bucket = routePolicy.equals(defaultPolicy) ? routePattern : routePolicy;
+        return tryAcquire(subject + "_" + bucket, applyOverride(routePolicy, username), permits);
+    }
 
-        rateLimitInfo.recordRequest(type);
-        cache.put(cacheKey, rateLimitInfo);
+    // Емкость политики маршрута: запрос на большее число разрешений не пройдет никогда
+    public int routeCapacity(String routePattern, String username) {
+        return limits.get(resolvePolicy(routePattern, username)).capacity();
     }
 
-    public enum RateLimitType {
-        API_REQUEST,
-        LOGIN_ATTEMPT,
-        TRANSFER_OPERATION
+    // Политика маршрута с учетом замены для пользователя; username - null для анонимных запросов
+    public String resolvePolicy(String routePattern, String username) {
+        return applyOverride(policyByRoute.computeIfAbsent(routePattern, this::matchRoute), username);
     }
 
-    private static class RateLimitInfo {
-        private final AtomicInteger requestsLastMinute = new AtomicInteger(0);
-        private final AtomicInteger loginAttemptsLastHour = new AtomicInteger(0);
-        private final AtomicInteger transfersLastDay = new AtomicInteger(0);
-        private LocalDateTime minuteWindowStart = LocalDateTime.now();
-        private LocalDateTime hourWindowStart = LocalDateTime.now();
-        private LocalDateTime dayWindowStart = LocalDateTime.now();
-
-        public synchronized boolean isRateLimited(RateLimitType type) {
-            resetCountersIfNeeded();
-
-            switch (type) {
-                case API_REQUEST:
-                    return requestsLastMinute.get() >= MAX_REQUESTS_PER_MINUTE;
-                case LOGIN_ATTEMPT:
-                    return loginAttemptsLastHour.get() >= MAX_LOGIN_ATTEMPTS_PER_HOUR;
-                case TRANSFER_OPERATION:
-                    return transfersLastDay.get() >= MAX_TRANSFERS_PER_DAY;
-                default:
-                    return false;
-            }
+    // Ключ по id пользователя: переименование не сбрасывает лимит, клиенты за одним NAT не делят его
+    public static String userSubject(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof User user && user.getId() != null) {
+            return "user:" + user.getId();
         }
+        return "user:" + principal.getName();
+    }
 
-        public synchronized void recordRequest(RateLimitType type) {
-            resetCountersIfNeeded();
-
-            switch (type) {
-                case API_REQUEST:
-                    requestsLastMinute.incrementAndGet();
-                    break;
-                case LOGIN_ATTEMPT:
-                    loginAttemptsLastHour.incrementAndGet();
-                    break;
-                case TRANSFER_OPERATION:
-                    transfersLastDay.incrementAndGet();
-                    break;
+    private String applyOverride(String policy, String username) {
+        if (username != null) {
+            Map<String, String> overrides = principalPolicies.get(username);
+            if (overrides != null) {
+                return overrides.getOrDefault(policy, policy);
             }
         }
+        return policy;
+    }
 
-        private void resetCountersIfNeeded() {
-            LocalDateTime now = LocalDateTime.now();
-
-            if (now.minusMinutes(1).isAfter(minuteWindowStart)) {
-                requestsLastMinute.set(0);
-                minuteWindowStart = now;
-            }
-
-            if (now.minusHours(1).isAfter(hourWindowStart)) {
-                loginAttemptsLastHour.set(0);
-                hourWindowStart = now;
+    private String matchRoute(String routePattern) {
+        PathContainer path = PathContainer.parsePath(routePattern);
+        for (CompiledRoute route : routes) {
+            if (route.pattern().matches(path)) {
+                return route.policy();
             }
+        }
+        return defaultPolicy;
+    }
 
-            if (now.minusDays(1).isAfter(dayWindowStart)) {
-                transfersLastDay.set(0);
-                dayWindowStart = now;
-            }
+    private String requirePolicy(String policy) {
+        if (!limits.containsKey(policy)) {
+            throw new IllegalStateException("Unknown rate limit policy: " + policy);
         }
+        return policy;
+    }
+
+    private record CompiledRoute(PathPattern pattern, String policy) {
     }
 }
@@ -0,0 +1,50 @@
+package com.bank.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Хранилище состояния лимитов. Выбирается свойством app.rate-limit.store:
+// memory - корзины в памяти узла (лимит на узел), jdbc - общая таблица (лимит на кластер)
+public interface RateLimitStore {
+
+    // Проверка и учет запроса одной операцией
+    default Decision tryAcquire(Key key, Limit limit) {
+        return tryAcquire(key, limit, 1);
+    }
+
+    // permits разрешений разом: либо все, либо ни одного
+    Decision tryAcquire(Key key, Limit limit, int permits);
+
+    // policy - имя политики лимита, subject - кого ограничиваем (IP, пользователь, маршрут)
+    record Key(String policy, String subject) {
+    }
+
+    // Не больше capacity запросов за period
+    record Limit(int capacity, Duration period) {
+
+        public Limit {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Rate limit capacity must be positive");
+            }
+        }
+    }
+
+    // Решение и состояние лимита после него. resetSeconds - через сколько лимит восстановится полностью,
+    // retryAfterSeconds - когда имеет смысл повторить отклоненный запрос (0 для разрешенного)
+    record Decision(boolean allowed, int limit, long remaining, long resetSeconds, long retryAfterSeconds) {
+
+        public static Decision allowed(int limit, long remaining, long resetNanos) {
+            return new Decision(true, limit, remaining, ceilSeconds(resetNanos), 0);
+        }
+
+        public static Decision rejected(int limit, long resetNanos, long retryAfterNanos) {
+            // Не меньше секунды: Retry-After: 0 клиенты понимают как "повторить сразу"
+            return new Decision(false, limit, 0, ceilSeconds(resetNanos), Math.max(1, ceilSeconds(retryAfterNanos)));
+        }
+
+        private static long ceilSeconds(long nanos) {
+            long second = TimeUnit.SECONDS.toNanos(1);
+            return Math.max(0, (nanos + second - 1) / second);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bank.service;
+
+import com.bank.entity.RefreshToken;
+import com.bank.entity.User;
+import com.bank.exception.InvalidRefreshTokenException;
+import com.bank.repository.RefreshTokenRepository;
+import com.bank.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+// Одноразовые refresh-токены: каждый обмен выдает новый токен той же цепочки, а старый гасит.
+// В БД хранится только SHA-256 токена; обмен не требует BCrypt, в отличие от входа по паролю
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final Duration ttl;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserRepository userRepository,
+                               @Value("${jwt.refresh-expiration:604800000}") long refreshExpirationInMs) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.ttl = Duration.ofMillis(refreshExpirationInMs);
+    }
+
+    @Transactional
+    public String issue(String username) {
+        return issue(username, UUID.randomUUID().toString());
+    }
+
+    // Повтор уже обмененного токена означает утечку: гасится вся цепочка, и клиент входит заново.
+    // Отзыв цепочки должен закоммититься, несмотря на исключение
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public Rotation rotate(String rawToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(rawToken))
+                .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token"));
+
+        if (current.isUsed()) {
+            refreshTokenRepository.revokeFamily(current.getFamily());
+            log.warn("Refresh token reuse detected for user {}, token family revoked", current.getUsername());
+            throw new InvalidRefreshTokenException("Refresh token has already been used");
+        }
+
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new InvalidRefreshTokenException("Refresh token has expired");
+        }
+
+        User user = userRepository.findByUsername(current.getUsername())
+                .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token"));
+
+        current.setUsed(true);
+        return new Rotation(user, issue(current.getUsername(), current.getFamily()));
+    }
+
+    // Выход: гасится цепочка refresh-токена, выданного при входе. Токен другого пользователя не трогаем
+    @Transactional
+    public void revokeFamily(String rawToken, String username) {
+        refreshTokenRepository.findByTokenHashForUpdate(hash(rawToken))
+                .filter(token -> token.getUsername().equals(username))
+                .ifPresent(token -> {
+                    refreshTokenRepository.revokeFamily(token.getFamily());
+                    log.info("Refresh token family of user {} revoked on logout", username);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-purge-interval-ms:3600000}",
+            initialDelayString = "${jwt.refresh-purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpiredTokens() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    private String issue(String username, String family) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(rawToken))
+                .username(username)
+                .family(family)
+                .used(false)
+                .expiresAt(LocalDateTime.now().plus(ttl))
+                .build());
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rotation {
+        private final User user;
+        private final String refreshToken;
+    }
+}
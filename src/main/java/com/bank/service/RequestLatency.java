@@ -0,0 +1,108 @@
+package com.bank.service;
+
+// Разбивка времени запроса по фазам. Фазы не пересекаются: вложенная фаза приостанавливает внешнюю,
+// например запись аудита в БД учитывается в db.write, а не в audit. Сумма фаз равна времени запроса,
+// время вне отмеченных участков (контроллер, сериализация) попадает в other.
+// Контекст хранится в ThreadLocal потока запроса; вне запроса (планировщик, группы коммита) enter - пустая операция
+public final class RequestLatency {
+
+    public enum Phase {
+        AUTH("auth"),
+        RATE_LIMIT("ratelimit"),
+        DB_READ("db.read"),
+        DB_WRITE("db.write"),
+        AUDIT("audit"),
+        EVENT("event"),
+        OTHER("other");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private static final ThreadLocal<RequestLatency> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private Phase current = Phase.OTHER;
+    private long phaseStartNanos;
+    private long totalNanos = -1;
+
+    private RequestLatency(long startNanos) {
+        this.startNanos = startNanos;
+        this.phaseStartNanos = startNanos;
+    }
+
+    public static RequestLatency start() {
+        RequestLatency latency = new RequestLatency(System.nanoTime());
+        CURRENT.set(latency);
+        return latency;
+    }
+
+    // Завершает учет и отвязывает контекст от потока
+    public static void finish(RequestLatency latency) {
+        CURRENT.remove();
+        long now = System.nanoTime();
+        latency.phaseNanos[latency.current.ordinal()] += now - latency.phaseStartNanos;
+        latency.totalNanos = now - latency.startNanos;
+    }
+
+    // Использование: try (RequestLatency.Scope ignored = RequestLatency.enter(Phase.AUDIT)) { ... }
+    public static Scope enter(Phase phase) {
+        RequestLatency latency = CURRENT.get();
+        if (latency == null || latency.current == phase) {
+            return Scope.NOOP;
+        }
+        Phase previous = latency.current;
+        latency.switchTo(phase);
+        return new Scope(latency, previous);
+    }
+
+    // Текущая фаза потока; null вне запроса
+    public static Phase currentPhase() {
+        RequestLatency latency = CURRENT.get();
+        return latency != null ? latency.current : null;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    private void switchTo(Phase phase) {
+        long now = System.nanoTime();
+        phaseNanos[current.ordinal()] += now - phaseStartNanos;
+        current = phase;
+        phaseStartNanos = now;
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private static final Scope NOOP = new Scope(null, null);
+
+        private final RequestLatency latency;
+        private final Phase previous;
+
+        private Scope(RequestLatency latency, Phase previous) {
+            this.latency = latency;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            // Запрос уже завершен (totalNanos >= 0) - например, поздний close из finally
+            if (latency != null && latency.totalNanos < 0) {
+                latency.switchTo(previous);
+            }
+        }
+    }
+}
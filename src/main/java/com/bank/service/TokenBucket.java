@@ -0,0 +1,82 @@
+package com.bank.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket без блокировок: все состояние - один long, "теоретическое время прибытия" (GCRA)
+// по System.nanoTime. Оно одновременно кодирует число оставшихся токенов и момент последнего
+// пополнения, поэтому проверка и списание токена - один compareAndSet
+public class TokenBucket {
+
+    private final int capacity;
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(int capacity, Duration refillPeriod) {
+        this(capacity, refillPeriod, System.nanoTime());
+    }
+
+    TokenBucket(int capacity, Duration refillPeriod, long nowNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.emissionIntervalNanos = Math.max(1, refillPeriod.toNanos() / capacity);
+        this.burstNanos = emissionIntervalNanos * capacity;
+        // Новая корзина полна
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        return acquire(nowNanos).allowed();
+    }
+
+    // Решение вместе с состоянием корзины после него - для заголовков RateLimit-* и Retry-After
+    public RateLimitStore.Decision acquire() {
+        return acquire(System.nanoTime());
+    }
+
+    // Несколько токенов одной операцией (пакет переводов). Больше capacity не пройдет никогда
+    public RateLimitStore.Decision acquirePermits(int permits) {
+        return acquire(permits, System.nanoTime());
+    }
+
+    RateLimitStore.Decision acquire(long nowNanos) {
+        return acquire(1, nowNanos);
+    }
+
+    RateLimitStore.Decision acquire(int permits, long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            // Сравнение через разность - устойчиво к переполнению nanoTime
+            long base = current - nowNanos > 0 ? current : nowNanos;
+            long next = base + emissionIntervalNanos * permits;
+            if (next - nowNanos > burstNanos) {
+                // Следующий токен появится, когда next - burstNanos догонит текущее время
+                return RateLimitStore.Decision.rejected(capacity, base - nowNanos, next - burstNanos - nowNanos);
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                long remaining = (burstNanos - (next - nowNanos)) / emissionIntervalNanos;
+                return RateLimitStore.Decision.allowed(capacity, remaining, next - nowNanos);
+            }
+        }
+    }
+
+    // Через сколько корзина снова будет полной: после этого ее можно удалить без потери состояния
+    public long nanosUntilFull() {
+        return Math.max(0, theoreticalArrival.get() - System.nanoTime());
+    }
+
+    public long getEmissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,165 @@
+package com.bank.service;
+
+import com.bank.entity.RevokedToken;
+import com.bank.repository.RevokedTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Отзыв JWT до истечения срока. Фильтр проверяет jti по фильтру Блума в памяти:
+// отрицательный ответ не обращается к БД, в таблицу идут только вероятные совпадения.
+// Отзывы с других узлов попадают в фильтр при очередной перестройке (rebuild-interval-ms)
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedTokens;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+    // Фильтр, который собирается прямо сейчас: отзывы во время перестройки попадают и в него
+    private volatile BloomFilter building;
+    // Размер следующего фильтра берется по прошлой перестройке: новый фильтр публикуется до чтения таблицы
+    private volatile int lastActiveCount;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${app.security.revocation.expected-tokens:100000}") long expectedTokens,
+                                  @Value("${app.security.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedTokens, falsePositiveRate);
+    }
+
+    public boolean isRevoked(String jti) {
+        // Токены, выданные до появления jti, отозвать нельзя - они доживают свой срок
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        return revokedTokenRepository.existsByJti(jti);
+    }
+
+    // Запись сохраняется в собственной транзакции и только после коммита попадает в фильтры.
+    // Сначала building, затем filter: если building еще не опубликован, перестройка прочитает таблицу
+    // уже после коммита; если уже сброшен, filter к этому моменту заменен новым
+    public void revoke(String jti, String username, Date expiresAt) {
+        if (jti == null || isRevoked(jti)) {
+            return;
+        }
+        revokedTokenRepository.save(RevokedToken.builder()
+                .jti(jti)
+                .username(username)
+                .expiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()))
+                .build());
+
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(jti);
+        }
+        filter.put(jti);
+        log.info("Token {} of user {} revoked", jti, username);
+    }
+
+    // Истекшие записи удаляются, и фильтр собирается заново: ложные срабатывания не копятся
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.security.revocation.rebuild-interval-ms:60000}",
+            initialDelayString = "${app.security.revocation.rebuild-interval-ms:60000}")
+    @Transactional
+    public void rebuild() {
+        // Публикуется до первого запроса: отзыв, закоммиченный после чтения таблицы, попадет в next
+        BloomFilter next = new BloomFilter(Math.max(expectedTokens, lastActiveCount * 2L), falsePositiveRate);
+        building = next;
+        List<String> active;
+        int purged;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            purged = revokedTokenRepository.deleteExpired(now);
+            active = revokedTokenRepository.findActiveJtis(now);
+            active.forEach(next::put);
+            filter = next;
+        } finally {
+            building = null;
+        }
+        lastActiveCount = active.size();
+
+        log.debug("Revocation filter rebuilt: {} active revocations, {} expired purged", active.size(), purged);
+    }
+
+    // Фильтр Блума на AtomicLongArray: добавление потокобезопасно без блокировок,
+    // проверка не создает объектов - хеши считаются прямо по символам строки
+    static class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(expectedInsertions, 1);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min((m + 63) >>> 6, Integer.MAX_VALUE - 8);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // FNV-1a по символам строки
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        // Финализатор MurmurHash3 - второй, независимый от первого хеш для двойного хеширования
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -3,15 +3,63 @@ package com.bank.service;
 import com.bank.entity.Transaction;
 import com.bank.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
+    private static final int BATCH_SIZE = 100;
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (from_card_id, to_card_id, amount, transaction_date, status) VALUES (?, ?, ?, ?, ?)";
+
     private final TransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     public Transaction saveTransaction(Transaction transaction) {
         return transactionRepository.save(transaction);
     }
+
+    // Пакетная вставка через JDBC: с IDENTITY-ключами Hibernate не группирует INSERT в батчи.
+    // Выполняется в текущей транзакции; сгенерированные id записываются в переводы (для записей журнала)
+    public void saveAllInBatch(List<Transaction> transactions) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < transactions.size(); from += BATCH_SIZE) {
+            List<Transaction> chunk = transactions.subList(from, Math.min(from + BATCH_SIZE, transactions.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_TRANSACTION_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Transaction transaction = chunk.get(i);
+                            ps.setLong(1, transaction.getFromCard().getId());
+                            ps.setLong(2, transaction.getToCard().getId());
+                            ps.setBigDecimal(3, transaction.getAmount());
+                            ps.setTimestamp(4, Timestamp.valueOf(now));
+                            ps.setString(5, transaction.getStatus().name());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    }, keyHolder);
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            }
+        }
+        transactions.forEach(transaction -> transaction.setTransactionDate(now));
+    }
 }
@@ -0,0 +1,109 @@
+package com.bank.benchmark;
+
+import com.bank.BankApplication;
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.CardRepository;
+import com.bank.repository.UserRepository;
+import com.bank.service.CardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переводы между случайными картами одного пользователя на 16 потоках по стратегиям app.transfer.strategy.
+// Чем меньше карт, тем выше конкуренция за каждую. Сценарий тот же, что в CardTransferConcurrencyTest,
+// который проверяет только сохранение суммы и отсутствие взаимоблокировок.
+// Контекст приложения с профилем test (H2 в памяти) - для выводов запускать с настройками реальной БД.
+// Запуск: mvn test-compile, затем main из IDE или java -cp <test classpath> com.bank.benchmark.CardTransferBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class CardTransferBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000.00");
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC", "LEDGER"})
+    public String strategy;
+
+    @Param({"4", "64"})
+    public int cardCount;
+
+    private ConfigurableApplicationContext context;
+    private CardService cardService;
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BankApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "app.transfer.strategy=" + strategy,
+                        "app.transfer.retry.max-attempts=20")
+                .run();
+        cardService = context.getBean(CardService.class);
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+
+        owner = context.getBean(UserRepository.class).save(User.builder()
+                .username("transfer-benchmark")
+                .password("password")
+                .email("transfer-benchmark@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+        for (int i = 0; i < cardCount; i++) {
+            cardIds.add(cardRepository.save(Card.builder()
+                    .cardNumber("transfer-benchmark-" + i)
+                    .cardHolder("TRANSFER BENCHMARK")
+                    .expiryDate(LocalDate.now().plusYears(2))
+                    .balance(INITIAL_BALANCE)
+                    .status(Card.CardStatus.ACTIVE)
+                    .user(owner)
+                    .build()).getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transferBetweenRandomCards() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(cardCount);
+        int to = (from + 1 + random.nextInt(cardCount - 1)) % cardCount;
+        cardService.transferBetweenCards(owner, cardIds.get(from), cardIds.get(to), BigDecimal.ONE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardTransferBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.bank.benchmark;
+
+import com.bank.service.EncryptionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Маскирование номера карты: прежняя реализация (Cipher.getInstance на каждый вызов)
+// против кэшированных по потокам Cipher и byte[]-API.
+// Запуск: mvn test-compile, затем main из IDE или java -cp <test classpath> com.bank.benchmark.EncryptionServiceBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EncryptionServiceBenchmark {
+
+    private static final String KEY = "benchmark-encryption-key-32-chars";
+
+    private EncryptionService encryptionService;
+    private LegacyEncryptionService legacyEncryptionService;
+    private String encryptedCardNumber;
+    // Прежний формат (ECB без префикса v1:) - GCM-шифротекст прежняя реализация не расшифрует
+    private String legacyEncryptedCardNumber;
+
+    @Setup
+    public void setUp() {
+        encryptionService = new EncryptionService(KEY);
+        legacyEncryptionService = new LegacyEncryptionService(KEY);
+        encryptedCardNumber = encryptionService.encrypt("4111111111111111");
+        legacyEncryptedCardNumber = legacyEncryptionService.encrypt("4111111111111111");
+    }
+
+    @Benchmark
+    public String legacyDecryptAndMask() {
+        String decrypted = legacyEncryptionService.decrypt(legacyEncryptedCardNumber);
+        return "**** **** **** " + decrypted.substring(decrypted.length() - 4);
+    }
+
+    @Benchmark
+    public String cachedCipherDecryptAndMask() {
+        String decrypted = encryptionService.decrypt(encryptedCardNumber);
+        return "**** **** **** " + decrypted.substring(decrypted.length() - 4);
+    }
+
+    @Benchmark
+    public String cachedCipherBytesDecryptAndMask() {
+        byte[] decrypted = encryptionService.decryptToBytes(encryptedCardNumber);
+        return "**** **** **** " + new String(decrypted, decrypted.length - 4, 4, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() {
+        return legacyEncryptionService.encrypt("4111111111111111");
+    }
+
+    @Benchmark
+    public String cachedCipherEncrypt() {
+        return encryptionService.encrypt("4111111111111111");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // Копия EncryptionService до кэширования Cipher - точка отсчета для сравнения
+    static class LegacyEncryptionService {
+
+        private final SecretKeySpec secretKey;
+
+        LegacyEncryptionService(String encryptionKey) {
+            byte[] keyBytes = new byte[32];
+            byte[] originalBytes = encryptionKey.getBytes();
+            System.arraycopy(originalBytes, 0, keyBytes, 0, Math.min(originalBytes.length, keyBytes.length));
+            this.secretKey = new SecretKeySpec(keyBytes, "AES");
+        }
+
+        String encrypt(String data) {
+            try {
+                Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+                return Base64.getEncoder().encodeToString(cipher.doFinal(data.getBytes()));
+            } catch (Exception e) {
+                throw new RuntimeException("Error encrypting data", e);
+            }
+        }
+
+        String decrypt(String encryptedData) {
+            try {
+                Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+                cipher.init(Cipher.DECRYPT_MODE, secretKey);
+                return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedData)));
+            } catch (Exception e) {
+                throw new RuntimeException("Error decrypting data", e);
+            }
+        }
+    }
+}
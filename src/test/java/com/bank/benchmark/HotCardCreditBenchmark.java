@@ -0,0 +1,122 @@
+package com.bank.benchmark;
+
+import com.bank.BankApplication;
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.CardRepository;
+import com.bank.repository.UserRepository;
+import com.bank.service.CardService;
+import com.bank.service.HotCardService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Зачисления на одну карту с 16 карт-источников в зависимости от числа слотов баланса
+// (0 - обычный режим, карта-получатель блокируется на каждый перевод).
+// Контекст приложения с профилем test: на H2 в памяти коммит дешев, поэтому выигрыш от слотов
+// меньше, чем на PostgreSQL - для выводов запускать с настройками реальной БД.
+// Запуск: mvn test-compile, затем main из IDE или java -cp <test classpath> com.bank.benchmark.HotCardCreditBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(HotCardCreditBenchmark.SOURCE_COUNT)
+public class HotCardCreditBenchmark {
+
+    static final int SOURCE_COUNT = 16;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000.00");
+
+    @Param({"0", "1", "4", "16"})
+    public int balanceSlots;
+
+    private ConfigurableApplicationContext context;
+    private CardService cardService;
+    private User owner;
+    private Long targetCardId;
+    private final List<Long> sourceCardIds = new ArrayList<>();
+    private final AtomicInteger nextSource = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BankApplication.class)
+                .profiles("test")
+                .properties("server.port=0")
+                .run();
+        cardService = context.getBean(CardService.class);
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+
+        owner = context.getBean(UserRepository.class).save(User.builder()
+                .username("hot-card-benchmark")
+                .password("password")
+                .email("hot-card-benchmark@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+        targetCardId = cardRepository.save(card("hot-target", BigDecimal.ZERO)).getId();
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            sourceCardIds.add(cardRepository.save(card("hot-source-" + i, INITIAL_BALANCE)).getId());
+        }
+        context.getBean(HotCardService.class).setBalanceSlots(targetCardId, balanceSlots);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Свой источник у каждого потока: конкуренция только за карту-получатель
+    @State(Scope.Thread)
+    public static class Source {
+        private Long cardId;
+
+        @Setup
+        public void setUp(HotCardCreditBenchmark benchmark) {
+            cardId = benchmark.sourceCardIds.get(benchmark.nextSource.getAndIncrement() % SOURCE_COUNT);
+        }
+    }
+
+    @Benchmark
+    public void creditOneCard(Source source) {
+        cardService.transferBetweenCards(owner, source.cardId, targetCardId, BigDecimal.ONE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HotCardCreditBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private Card card(String cardNumber, BigDecimal balance) {
+        return Card.builder()
+                .cardNumber(cardNumber)
+                .cardHolder("HOT CARD BENCHMARK")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(balance)
+                .status(Card.CardStatus.ACTIVE)
+                .user(owner)
+                .build();
+    }
+}
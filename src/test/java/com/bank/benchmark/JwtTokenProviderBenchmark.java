@@ -0,0 +1,81 @@
+package com.bank.benchmark;
+
+import com.bank.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Проверка JWT в фильтре: прежний путь (validateToken + getUsernameFromJWT, два parserBuilder и две проверки HMAC)
+// против parseValidatedClaims с общим JwtParser - без кэша и с попаданием в кэш.
+// Запуск: mvn test-compile, затем main из IDE или java -cp <test classpath> com.bank.benchmark.JwtTokenProviderBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "benchmark-jwt-secret-key-32chars";
+
+    private JwtTokenProvider tokenProvider;
+    private JwtTokenProvider uncachedTokenProvider;
+    private SecretKey signingKey;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenProvider = new JwtTokenProvider(SECRET, 3_600_000);
+        // Размер кэша 0 - каждый вызов проверяет подпись, видна цена одного разбора
+        uncachedTokenProvider = new JwtTokenProvider(SECRET, 3_600_000, 0, false);
+        signingKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+
+        token = tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                "user", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        tokenProvider.parseValidatedClaims(token);
+    }
+
+    @Benchmark
+    public String legacyValidateThenParse() {
+        Jwts.parserBuilder().setSigningKey(signingKey).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(signingKey).build().parseClaimsJws(token).getBody();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public String singleParse() {
+        return uncachedTokenProvider.parseValidatedClaims(token).orElseThrow().getSubject();
+    }
+
+    @Benchmark
+    public String singleParseCacheHit() {
+        return tokenProvider.parseValidatedClaims(token).orElseThrow().getSubject();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.bank.benchmark;
+
+import com.bank.service.TokenBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Лимит по одному горячему ключу под конкуренцией 8 потоков: прежний synchronized RateLimitInfo
+// (isRateLimited + recordRequest, LocalDateTime.now() на каждый вызов) против TokenBucket.tryAcquire.
+// Лимит заведомо недостижим, чтобы измерялся путь разрешенного запроса.
+// Запуск: mvn test-compile, затем main из IDE или java -cp <test classpath> com.bank.benchmark.RateLimiterBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    private LegacyRateLimitInfo legacy;
+    private TokenBucket tokenBucket;
+
+    @Setup
+    public void setUp() {
+        legacy = new LegacyRateLimitInfo();
+        tokenBucket = new TokenBucket(Integer.MAX_VALUE, Duration.ofNanos(Integer.MAX_VALUE));
+    }
+
+    @Benchmark
+    public boolean legacyCheckThenRecord() {
+        if (legacy.isRateLimited()) {
+            return false;
+        }
+        legacy.recordRequest();
+        return true;
+    }
+
+    @Benchmark
+    public boolean tokenBucketTryAcquire() {
+        return tokenBucket.tryAcquire();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    // Копия RateLimitService.RateLimitInfo до перехода на TokenBucket - точка отсчета для сравнения
+    static class LegacyRateLimitInfo {
+        private final AtomicInteger requestsLastMinute = new AtomicInteger(0);
+        private final AtomicInteger loginAttemptsLastHour = new AtomicInteger(0);
+        private final AtomicInteger transfersLastDay = new AtomicInteger(0);
+        private LocalDateTime minuteWindowStart = LocalDateTime.now();
+        private LocalDateTime hourWindowStart = LocalDateTime.now();
+        private LocalDateTime dayWindowStart = LocalDateTime.now();
+
+        synchronized boolean isRateLimited() {
+            resetCountersIfNeeded();
+            return requestsLastMinute.get() >= Integer.MAX_VALUE;
+        }
+
+        synchronized void recordRequest() {
+            resetCountersIfNeeded();
+            requestsLastMinute.incrementAndGet();
+        }
+
+        private void resetCountersIfNeeded() {
+            LocalDateTime now = LocalDateTime.now();
+
+            if (now.minusMinutes(1).isAfter(minuteWindowStart)) {
+                requestsLastMinute.set(0);
+                minuteWindowStart = now;
+            }
+
+            if (now.minusHours(1).isAfter(hourWindowStart)) {
+                loginAttemptsLastHour.set(0);
+                hourWindowStart = now;
+            }
+
+            if (now.minusDays(1).isAfter(dayWindowStart)) {
+                transfersLastDay.set(0);
+                dayWindowStart = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.bank.config;
+
+import com.bank.service.RequestLatency;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyDataSourceTest {
+
+    private JdbcConnectionPool pool;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(new LatencyDataSource(pool));
+        jdbcTemplate.execute("CREATE TABLE items (id BIGINT AUTO_INCREMENT PRIMARY KEY, amount INT)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.dispose();
+    }
+
+    @Test
+    void phaseOf_ShouldClassifyByStatementType() {
+        assertEquals(RequestLatency.Phase.DB_READ, LatencyDataSource.phaseOf("select c.id from cards c"));
+        assertEquals(RequestLatency.Phase.DB_READ, LatencyDataSource.phaseOf("  WITH t AS (SELECT 1) SELECT * FROM t"));
+        assertEquals(RequestLatency.Phase.DB_WRITE, LatencyDataSource.phaseOf("select c.id from cards c for update"));
+        assertEquals(RequestLatency.Phase.DB_WRITE, LatencyDataSource.phaseOf("SELECT * FROM cards FOR NO KEY UPDATE"));
+        assertEquals(RequestLatency.Phase.DB_WRITE, LatencyDataSource.phaseOf("insert into transactions values (?)"));
+        assertEquals(RequestLatency.Phase.DB_WRITE,
+                LatencyDataSource.phaseOf("update card_balance_slots set balance=balance+? where id=?"));
+        assertEquals(RequestLatency.Phase.DB_WRITE, LatencyDataSource.phaseOf("delete from refresh_tokens"));
+    }
+
+    @Test
+    void jdbcTemplateWrites_ShouldBeCountedAsDbWrite() {
+        // Given
+        RequestLatency latency = RequestLatency.start();
+
+        // When
+        jdbcTemplate.batchUpdate("INSERT INTO items (amount) VALUES (?)", List.of(new Object[]{1}, new Object[]{2}));
+        jdbcTemplate.update("UPDATE items SET amount = amount + 1");
+        RequestLatency.finish(latency);
+
+        // Then
+        assertTrue(latency.getPhaseNanos(RequestLatency.Phase.DB_WRITE) > 0);
+        assertEquals(0, latency.getPhaseNanos(RequestLatency.Phase.DB_READ));
+    }
+
+    @Test
+    void jdbcTemplateSelect_ShouldBeCountedAsDbRead() {
+        // Given
+        jdbcTemplate.update("INSERT INTO items (amount) VALUES (1)");
+        RequestLatency latency = RequestLatency.start();
+
+        // When
+        Integer sum = jdbcTemplate.queryForObject("SELECT SUM(amount) FROM items", Integer.class);
+        RequestLatency.finish(latency);
+
+        // Then
+        assertEquals(1, sum);
+        assertTrue(latency.getPhaseNanos(RequestLatency.Phase.DB_READ) > 0);
+        assertEquals(0, latency.getPhaseNanos(RequestLatency.Phase.DB_WRITE));
+    }
+
+    @Test
+    void statementsOutsideRequest_ShouldNotFail() {
+        // When
+        jdbcTemplate.update("INSERT INTO items (amount) VALUES (1)");
+
+        // Then
+        assertNull(RequestLatency.currentPhase());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items", Integer.class));
+    }
+}
@@ -1,21 +1,18 @@
 package com.bank.config;
 
+import com.bank.service.InMemoryRateLimitStore;
+import com.bank.service.MonitoringService;
 import com.bank.service.RateLimitService;
 import org.springframework.boot.test.context.TestConfiguration;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 
 @TestConfiguration
 public class TestConfig {
 
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("rateLimit");
-    }
-
-    @Bean
-    public RateLimitService rateLimitService() {
-        return new RateLimitService(cacheManager());
+    public RateLimitService rateLimitService(MonitoringService monitoringService,
+                                             RateLimitProperties rateLimitProperties) {
+        return new RateLimitService(new InMemoryRateLimitStore(monitoringService, 1000),
+                rateLimitProperties, monitoringService);
     }
 }
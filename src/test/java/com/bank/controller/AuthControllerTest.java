@@ -2,12 +2,18 @@ package com.bank.controller;
 
 import com.bank.config.TestSecurityConfig;
 import com.bank.dto.AuthRequest;
+import com.bank.entity.User;
+import com.bank.exception.InvalidRefreshTokenException;
 import com.bank.security.JwtTokenProvider;
 import com.bank.service.AuditService;
 import com.bank.service.MonitoringService;
 import com.bank.service.PasswordPolicyService;
 import com.bank.service.RateLimitService;
+import com.bank.service.RateLimitStore;
+import com.bank.service.RefreshTokenService;
+import com.bank.service.TokenRevocationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -23,6 +29,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.Date;
+import java.util.Optional;
+
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -54,6 +63,12 @@ class AuthControllerTest {
     @MockBean
     private PasswordPolicyService passwordPolicyService;
 
+    @MockBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -80,8 +95,10 @@ class AuthControllerTest {
         doNothing().when(auditService).logSecurityEvent(anyString(), anyString(), anyBoolean(), any());
 
         // Setup rate limit service to allow requests
-        when(rateLimitService.isRateLimited(anyString(), any())).thenReturn(false);
-        doNothing().when(rateLimitService).recordRequest(anyString(), any());
+        when(rateLimitService.tryAcquire(anyString(), any()))
+                .thenReturn(new RateLimitStore.Decision(true, 5, 4, 720, 0));
+        when(rateLimitService.tryAcquireRoute(anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new RateLimitStore.Decision(true, 100, 99, 1, 0));
 
         // Setup password policy service to allow valid passwords
         when(passwordPolicyService.validatePassword("ValidPass123!")).thenReturn(true);
@@ -95,6 +112,7 @@ class AuthControllerTest {
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
                 .thenReturn(authentication);
         when(tokenProvider.generateToken(authentication)).thenReturn("test-jwt-token");
+        when(refreshTokenService.issue("testuser")).thenReturn("test-refresh-token");
 
         // When & Then
         mockMvc.perform(post("/api/auth/login")
@@ -102,7 +120,8 @@ class AuthControllerTest {
                         .content(objectMapper.writeValueAsString(validAuthRequest)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.accessToken").value("test-jwt-token"))
-                .andExpect(jsonPath("$.tokenType").value("Bearer"));
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andExpect(jsonPath("$.refreshToken").value("test-refresh-token"));
 
         // Verify interactions
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
@@ -136,13 +155,17 @@ class AuthControllerTest {
     @Test
     void authenticateUser_RateLimited_ShouldReturnTooManyRequests() throws Exception {
         // Given
-        when(rateLimitService.isRateLimited(anyString(), any())).thenReturn(true);
+        when(rateLimitService.tryAcquire(anyString(), any()))
+                .thenReturn(new RateLimitStore.Decision(false, 5, 0, 3600, 720));
 
         // When & Then
         mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(validAuthRequest)))
                 .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "720"))
+                .andExpect(header().string("RateLimit-Remaining", "0"))
+                .andExpect(header().string("RateLimit-Reset", "3600"))
                 .andExpect(content().string("Rate limit exceeded. Please try again later."));
 
         // Verify no authentication attempts when rate limited
@@ -317,4 +340,62 @@ class AuthControllerTest {
         verify(tokenProvider, never()).generateToken(any());
         // Не проверяем вызовы PasswordPolicyService, так как Spring может не вызывать кастомные валидаторы при нарушении @NotBlank
     }
+
+    @Test
+    void refresh_ValidRefreshToken_ShouldReturnNewTokensWithoutAuthentication() throws Exception {
+        // Given
+        User user = User.builder()
+                .id(1L)
+                .username("testuser")
+                .role(User.Role.ROLE_USER)
+                .build();
+        when(refreshTokenService.rotate("old-refresh-token"))
+                .thenReturn(new RefreshTokenService.Rotation(user, "new-refresh-token"));
+        when(tokenProvider.generateToken(any(Authentication.class))).thenReturn("new-jwt-token");
+
+        // When & Then
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"old-refresh-token\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accessToken").value("new-jwt-token"))
+                .andExpect(jsonPath("$.refreshToken").value("new-refresh-token"));
+
+        verify(authenticationManager, never()).authenticate(any());
+    }
+
+    @Test
+    void logout_WithRefreshToken_ShouldRevokeAccessTokenAndRefreshFamily() throws Exception {
+        // Given
+        Claims claims = Mockito.mock(Claims.class);
+        when(claims.getId()).thenReturn("access-jti");
+        when(claims.getSubject()).thenReturn("testuser");
+        when(claims.getExpiration()).thenReturn(new Date(System.currentTimeMillis() + 60_000));
+        when(tokenProvider.parseValidatedClaims("access-token")).thenReturn(Optional.of(claims));
+
+        // When & Then
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer access-token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"login-refresh-token\"}"))
+                .andExpect(status().isOk());
+
+        verify(tokenRevocationService).revoke(eq("access-jti"), eq("testuser"), any(Date.class));
+        verify(refreshTokenService).revokeFamily("login-refresh-token", "testuser");
+    }
+
+    @Test
+    void refresh_InvalidRefreshToken_ShouldReturnUnauthorized() throws Exception {
+        // Given
+        when(refreshTokenService.rotate("reused-refresh-token"))
+                .thenThrow(new InvalidRefreshTokenException("Refresh token has already been used"));
+
+        // When & Then
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"reused-refresh-token\"}"))
+                .andExpect(status().isUnauthorized());
+
+        verify(tokenProvider, never()).generateToken(any());
+    }
 }
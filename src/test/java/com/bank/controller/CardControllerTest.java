@@ -1,11 +1,17 @@
 package com.bank.controller;
 
-import com.bank.config.RateLimitConfig;
 import com.bank.config.TestSecurityConfig;
+import com.bank.dto.BatchTransferRequest;
+import com.bank.dto.BatchTransferResponse;
 import com.bank.dto.TransferRequest;
+import com.bank.entity.Card;
 import com.bank.service.CardService;
+import com.bank.service.GroupCommitTransferService;
+import com.bank.service.IdempotencyService;
 import com.bank.service.RateLimitService;
+import com.bank.service.RateLimitStore;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -15,18 +21,33 @@ import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = CardController.class)
 @ActiveProfiles("test")
-@Import({RateLimitConfig.class, TestSecurityConfig.class})
+@Import(TestSecurityConfig.class)
 class CardControllerTest {
 
     @Autowired
@@ -38,9 +59,22 @@ class CardControllerTest {
     @MockBean
     private RateLimitService rateLimitService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private GroupCommitTransferService groupCommitTransferService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp() {
+        when(rateLimitService.tryAcquireRoute(anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new RateLimitStore.Decision(true, 100, 99, 1, 0));
+        when(rateLimitService.routeCapacity(anyString(), any())).thenReturn(10);
+    }
+
     @Test
     @WithMockUser(username = "testuser")
     void transferBetweenCards_ValidRequest_ShouldReturnSuccess() throws Exception {
@@ -60,6 +94,122 @@ class CardControllerTest {
                 .andExpect(content().string("Transfer completed successfully"));
     }
 
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBetweenCards_ReplayedIdempotencyKey_ShouldReturnStoredResponse() throws Exception {
+        // Given
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setFromCardId(1L);
+        transferRequest.setToCardId(2L);
+        transferRequest.setAmount(new BigDecimal("100.00"));
+
+        when(idempotencyService.findCached(eq("testuser"), eq("key-1"), any()))
+                .thenReturn(Optional.of(new IdempotencyService.StoredResponse("1:2:100", 200,
+                        "Transfer completed successfully")));
+
+        // When & Then
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().string("Transfer completed successfully"));
+
+        verify(cardService, never()).transferBetweenCards(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBetweenCards_NewIdempotencyKey_ShouldTransferAndRemember() throws Exception {
+        // Given
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setFromCardId(1L);
+        transferRequest.setToCardId(2L);
+        transferRequest.setAmount(new BigDecimal("100.00"));
+
+        when(idempotencyService.findCached(any(), any(), any())).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header("Idempotency-Key", "key-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Transfer completed successfully"));
+
+        verify(cardService).transferBetweenCards(any(), eq(1L), eq(2L), any(BigDecimal.class), eq("key-2"));
+        verify(idempotencyService).remember(eq("testuser"), eq("key-2"), any());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferAsync_ShouldReturnResultAfterGroupCommit() throws Exception {
+        // Given
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setFromCardId(1L);
+        transferRequest.setToCardId(2L);
+        transferRequest.setAmount(new BigDecimal("100.00"));
+
+        when(groupCommitTransferService.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(
+                new BatchTransferResponse.LegResult(0, 1L, 2L, new BigDecimal("100.00"),
+                        BatchTransferResponse.LegStatus.SUCCESS, null)));
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(post("/api/cards/transfers/async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(transferRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCESS"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void getCard_ShouldMaskNumberFromStoredLastFourDigits() throws Exception {
+        // Given
+        Card card = Card.builder()
+                .id(1L)
+                .cardNumber("encrypted")
+                .cardLast4("3456")
+                .cardHolder("TEST USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(new BigDecimal("100.00"))
+                .build();
+        when(cardService.getCardById(eq(1L), any())).thenReturn(card);
+        when(cardService.getCardBalance(card)).thenReturn(new BigDecimal("150.00"));
+
+        // When & Then
+        mockMvc.perform(get("/api/cards/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardNumber").value("**** **** **** 3456"))
+                .andExpect(jsonPath("$.balance").value(150.00));
+
+        verify(cardService, never()).getMaskedCardNumber(any());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void getCard_RateLimited_ShouldReturnTooManyRequestsWithRetryAfter() throws Exception {
+        // Given
+        when(rateLimitService.tryAcquireRoute(anyString(), anyString(), any(), anyInt()))
+                .thenReturn(new RateLimitStore.Decision(false, 100, 0, 60, 1));
+
+        // When & Then
+        mockMvc.perform(get("/api/cards/1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(header().string("RateLimit-Limit", "100"))
+                .andExpect(header().string("RateLimit-Remaining", "0"))
+                .andExpect(header().string("RateLimit-Reset", "60"));
+
+        verify(cardService, never()).getCardById(any(), any());
+    }
+
     @Test
     @WithMockUser(username = "testuser")
     void requestBlockCard_ShouldReturnSuccess() throws Exception {
@@ -71,4 +221,84 @@ class CardControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("Block request submitted for card: 1. Please contact administrator."));
     }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBatch_ValidRequest_ShouldReturnLegResults() throws Exception {
+        // Given
+        TransferRequest leg = new TransferRequest();
+        leg.setFromCardId(1L);
+        leg.setToCardId(2L);
+        leg.setAmount(new BigDecimal("100.00"));
+        BatchTransferRequest batchRequest = new BatchTransferRequest();
+        batchRequest.setLegs(List.of(leg));
+
+        when(cardService.transferBatch(any(), anyList(), anyBoolean())).thenReturn(new BatchTransferResponse(
+                true, 1, 0, List.of(new BatchTransferResponse.LegResult(0, 1L, 2L, new BigDecimal("100.00"),
+                BatchTransferResponse.LegStatus.SUCCESS, null))));
+
+        // When & Then
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[0].status").value("SUCCESS"));
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBatch_OverTransferLimit_ShouldChargePerLegAndReturnTooManyRequests() throws Exception {
+        // Given
+        TransferRequest leg = new TransferRequest();
+        leg.setFromCardId(1L);
+        leg.setToCardId(2L);
+        leg.setAmount(new BigDecimal("100.00"));
+        BatchTransferRequest batchRequest = new BatchTransferRequest();
+        batchRequest.setLegs(List.of(leg, leg, leg));
+        when(rateLimitService.tryAcquireRoute(anyString(), eq(RateLimitService.BATCH_TRANSFER_ROUTE),
+                eq("testuser"), eq(3)))
+                .thenReturn(new RateLimitStore.Decision(false, 10, 0, 86400, 3600));
+
+        // When & Then
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3600"));
+
+        verify(cardService, never()).transferBatch(any(), anyList(), anyBoolean());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBatch_MoreLegsThanTransferLimit_ShouldReturnPayloadTooLargeWithoutCharging() throws Exception {
+        // Given
+        TransferRequest leg = new TransferRequest();
+        leg.setFromCardId(1L);
+        leg.setToCardId(2L);
+        leg.setAmount(new BigDecimal("1.00"));
+        BatchTransferRequest batchRequest = new BatchTransferRequest();
+        batchRequest.setLegs(Collections.nCopies(11, leg));
+
+        // When & Then
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(header().doesNotExist("Retry-After"));
+
+        verify(rateLimitService, never()).tryAcquireRoute(anyString(), eq(RateLimitService.BATCH_TRANSFER_ROUTE),
+                any(), anyInt());
+        verify(cardService, never()).transferBatch(any(), anyList(), anyBoolean());
+    }
+
+    @Test
+    @WithMockUser(username = "testuser")
+    void transferBatch_EmptyLegs_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/cards/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"legs\": []}"))
+                .andExpect(status().isBadRequest());
+    }
 }
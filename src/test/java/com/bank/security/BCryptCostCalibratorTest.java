@@ -0,0 +1,20 @@
+package com.bank.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptCostCalibratorTest {
+
+    @Test
+    void calibrate_ZeroTarget_ShouldReturnMinCost() {
+        // When & Then
+        assertEquals(4, BCryptCostCalibrator.calibrate(0, 4, 12));
+    }
+
+    @Test
+    void calibrate_UnreachableTarget_ShouldCapAtMaxCost() {
+        // When & Then
+        assertEquals(6, BCryptCostCalibrator.calibrate(60_000, 4, 6));
+    }
+}
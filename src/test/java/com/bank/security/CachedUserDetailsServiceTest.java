@@ -0,0 +1,93 @@
+package com.bank.security;
+
+import com.bank.entity.User;
+import com.bank.repository.UserRepository;
+import com.bank.service.MonitoringService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CachedUserDetailsServiceTest {
+
+    @Autowired
+    private CachedUserDetailsService cachedUserDetailsService;
+
+    @Autowired
+    private MonitoringService monitoringService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("cached-user")
+                .password("password")
+                .email("cached@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void loadUserByUsername_RepeatedLookup_ShouldBeServedFromCache() {
+        // Given
+        long hits = monitoringService.getMetric("auth.user.cache.hits");
+        long misses = monitoringService.getMetric("auth.user.cache.misses");
+
+        // When
+        UserDetails first = cachedUserDetailsService.loadUserByUsername("cached-user");
+        UserDetails second = cachedUserDetailsService.loadUserByUsername("cached-user");
+
+        // Then
+        assertSame(first, second);
+        assertEquals("", second.getPassword());
+        assertEquals(user.getId(), assertInstanceOf(User.class, second).getId());
+        assertEquals(misses + 1, monitoringService.getMetric("auth.user.cache.misses"));
+        assertEquals(hits + 1, monitoringService.getMetric("auth.user.cache.hits"));
+    }
+
+    @Test
+    void loadUserByUsername_AfterRoleChange_ShouldReloadUser() {
+        // Given
+        cachedUserDetailsService.loadUserByUsername("cached-user");
+
+        // When
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        stored.setRole(User.Role.ROLE_ADMIN);
+        userRepository.save(stored);
+
+        // Then
+        UserDetails reloaded = cachedUserDetailsService.loadUserByUsername("cached-user");
+        assertTrue(reloaded.getAuthorities().stream()
+                .anyMatch(authority -> authority.getAuthority().equals("ROLE_ADMIN")));
+    }
+
+    @Test
+    void loadUserByUsername_AfterEmailChange_ShouldKeepCachedUser() {
+        // Given
+        UserDetails cached = cachedUserDetailsService.loadUserByUsername("cached-user");
+
+        // When
+        User stored = userRepository.findById(user.getId()).orElseThrow();
+        stored.setEmail("cached-new@bank.com");
+        userRepository.save(stored);
+
+        // Then
+        assertSame(cached, cachedUserDetailsService.loadUserByUsername("cached-user"));
+    }
+}
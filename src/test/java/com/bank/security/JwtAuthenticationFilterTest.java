@@ -0,0 +1,73 @@
+package com.bank.security;
+
+import com.bank.entity.User;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Режим по умолчанию (jwt.claims-principal.enabled: false): принципал берется из CachedUserDetailsService
+@SpringBootTest
+@ActiveProfiles("test")
+class JwtAuthenticationFilterTest {
+
+    @Autowired
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .username("filter-user")
+                .password("password")
+                .email("filter@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void doFilter_ValidToken_ShouldAuthenticateWithUserEntityPrincipal() throws Exception {
+        // Given
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        // When: второй запрос обслуживается из кэша пользователей
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+            request.addHeader("Authorization", "Bearer " + token);
+            SecurityContextHolder.clearContext();
+            jwtAuthenticationFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        }
+
+        // Then
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        User principal = assertInstanceOf(User.class, authentication.getPrincipal());
+        assertEquals(user.getId(), principal.getId());
+        assertEquals("", principal.getPassword());
+    }
+}
@@ -1,5 +1,7 @@
 package com.bank.security;
 
+import com.bank.entity.User;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -7,6 +9,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.Collections;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,4 +84,107 @@ class JwtTokenProviderTest {
         // Then
         assertFalse(isValid);
     }
+
+    @Test
+    void parseValidatedClaims_ValidToken_ShouldReturnClaims() {
+        // Given
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                "testuser",
+                "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+        );
+        String token = jwtTokenProvider.generateToken(authentication);
+
+        // When
+        Optional<Claims> first = jwtTokenProvider.parseValidatedClaims(token);
+        Optional<Claims> second = jwtTokenProvider.parseValidatedClaims(token);
+
+        // Then
+        assertTrue(first.isPresent());
+        assertEquals("testuser", first.get().getSubject());
+        assertEquals("ROLE_USER", first.get().get("authorities"));
+        assertSame(first.get(), second.orElseThrow());
+    }
+
+    @Test
+    void parseValidatedClaims_TamperedToken_ShouldReturnEmpty() {
+        // Given
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                "testuser",
+                "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+        );
+        String token = jwtTokenProvider.generateToken(authentication);
+        jwtTokenProvider.parseValidatedClaims(token);
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+
+        // When
+        Optional<Claims> claims = jwtTokenProvider.parseValidatedClaims(tampered);
+
+        // Then
+        assertTrue(claims.isEmpty());
+    }
+
+    @Test
+    void parseValidatedClaims_TokenFromOtherKey_ShouldReturnEmpty() {
+        // Given
+        JwtTokenProvider otherProvider = new JwtTokenProvider("other-secret-key-very-long-secret-key-for-testing-purposes", 86400000);
+        String token = otherProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                "testuser",
+                "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
+        ));
+
+        // When
+        Optional<Claims> claims = jwtTokenProvider.parseValidatedClaims(token);
+
+        // Then
+        assertTrue(claims.isEmpty());
+    }
+
+    @Test
+    void getPrincipalFromClaims_ClaimsPrincipalEnabled_ShouldBuildUserWithoutLookup() {
+        // Given
+        JwtTokenProvider claimsProvider = new JwtTokenProvider(
+                "test-secret-key-very-long-secret-key-for-testing-purposes-here", 86400000, 100, true);
+        User user = User.builder()
+                .id(42L)
+                .username("testuser")
+                .password("hash")
+                .role(User.Role.ROLE_ADMIN)
+                .build();
+        String token = claimsProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        // When
+        Optional<User> principal = claimsProvider.getPrincipalFromClaims(
+                claimsProvider.parseValidatedClaims(token).orElseThrow());
+
+        // Then
+        assertTrue(principal.isPresent());
+        assertEquals(42L, principal.get().getId());
+        assertEquals("testuser", principal.get().getUsername());
+        assertEquals(User.Role.ROLE_ADMIN, principal.get().getRole());
+        assertNull(principal.get().getPassword());
+    }
+
+    @Test
+    void getPrincipalFromClaims_ClaimsPrincipalDisabled_ShouldReturnEmpty() {
+        // Given
+        User user = User.builder()
+                .id(42L)
+                .username("testuser")
+                .role(User.Role.ROLE_USER)
+                .build();
+        String token = jwtTokenProvider.generateToken(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+
+        // When
+        Optional<User> principal = jwtTokenProvider.getPrincipalFromClaims(
+                jwtTokenProvider.parseValidatedClaims(token).orElseThrow());
+
+        // Then
+        assertTrue(principal.isEmpty());
+    }
 }
@@ -0,0 +1,94 @@
+package com.bank.service;
+
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.CardRepository;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = "app.card-backfill.chunk-size=2")
+class CardNumberBackfillServiceTest {
+
+    @Autowired
+    private CardNumberBackfillService cardNumberBackfillService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberIndexService cardNumberIndexService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("backfill-user")
+                .password("password")
+                .email("backfill@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+
+        // Пять карт при размере порции 2 - три порции, последняя неполная
+        for (int i = 0; i < 5; i++) {
+            cardIds.add(saveCard(encryptionService.encrypt("411111111111100" + i)));
+        }
+        cardIds.add(saveCard("not-a-ciphertext"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void backfill_ShouldFillLastFourDigitsAndHashAndSkipUndecryptableRows() {
+        // When
+        int updated = cardNumberBackfillService.backfill();
+
+        // Then
+        assertEquals(5, updated);
+        for (int i = 0; i < 5; i++) {
+            Card card = cardRepository.findById(cardIds.get(i)).orElseThrow();
+            assertEquals("100" + i, card.getCardLast4());
+            assertEquals(cardNumberIndexService.hash("411111111111100" + i), card.getCardNumberHash());
+        }
+        assertNull(cardRepository.findById(cardIds.get(5)).orElseThrow().getCardLast4());
+        assertTrue(cardRepository.findByCardNumberHash(cardNumberIndexService.hash("4111111111111003")).isPresent());
+        assertEquals(0, cardNumberBackfillService.backfill());
+    }
+
+    private Long saveCard(String encryptedCardNumber) {
+        return cardRepository.save(Card.builder()
+                .cardNumber(encryptedCardNumber)
+                .cardHolder("BACKFILL USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(BigDecimal.ZERO)
+                .status(Card.CardStatus.ACTIVE)
+                .user(owner)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,34 @@
+package com.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardNumberIndexServiceTest {
+
+    private final CardNumberIndexService cardNumberIndexService =
+            new CardNumberIndexService("test-blind-index-key-32-chars-long!");
+
+    @Test
+    void hash_ShouldBeDeterministicAndKeyed() {
+        // Given
+        CardNumberIndexService otherKey = new CardNumberIndexService("other-blind-index-key-32-chars-long");
+
+        // When
+        String hash = cardNumberIndexService.hash("1234567890123456");
+
+        // Then
+        assertEquals(64, hash.length());
+        assertEquals(hash, cardNumberIndexService.hash("1234567890123456"));
+        assertEquals(hash, cardNumberIndexService.hash("1234567890123456".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(hash, cardNumberIndexService.hash("1234567890123457"));
+        assertNotEquals(hash, otherKey.hash("1234567890123456"));
+    }
+
+    @Test
+    void hash_NullInput_ShouldReturnNull() {
+        assertNull(cardNumberIndexService.hash((String) null));
+    }
+}
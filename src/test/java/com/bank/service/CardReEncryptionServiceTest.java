@@ -0,0 +1,150 @@
+package com.bank.service;
+
+import com.bank.dto.KeyRotationStatus;
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.CardRepository;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.encryption.keys.v2=rotated-encryption-key-32-chars-long",
+        "app.encryption.active-key-id=v2",
+        "app.encryption.re-encryption.chunk-size=3",
+        "app.encryption.re-encryption.threads=2"
+})
+class CardReEncryptionServiceTest {
+
+    private static final int CARD_COUNT = 10;
+
+    @Autowired
+    private CardReEncryptionService cardReEncryptionService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("rotation-user")
+                .password("password")
+                .email("rotation@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+
+        // Номера под прежним ключом v1, как до ротации
+        EncryptionService previousKey = new EncryptionService("test-encryption-key-32-chars-long-1234567890");
+        for (int i = 0; i < CARD_COUNT; i++) {
+            cardIds.add(cardRepository.save(Card.builder()
+                    .cardNumber(previousKey.encrypt(cardNumber(i)))
+                    .cardHolder("ROTATION USER")
+                    .expiryDate(LocalDate.now().plusYears(2))
+                    .balance(BigDecimal.ZERO)
+                    .status(Card.CardStatus.ACTIVE)
+                    .user(owner)
+                    .build()).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardReEncryptionService.stop();
+        cardRepository.deleteAllById(cardIds);
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void start_ShouldReEncryptAllCardsWithActiveKey() throws Exception {
+        // Given
+        assertEquals(CARD_COUNT, cardReEncryptionService.getStatus().getRemaining());
+
+        // When
+        cardReEncryptionService.start();
+        KeyRotationStatus status = awaitFinished();
+
+        // Then
+        assertEquals(CARD_COUNT, status.getReEncrypted());
+        assertEquals(0, status.getFailed());
+        assertEquals(0, status.getRemaining());
+        for (int i = 0; i < CARD_COUNT; i++) {
+            String cardNumber = cardRepository.findById(cardIds.get(i)).orElseThrow().getCardNumber();
+            assertTrue(encryptionService.isEncryptedWithActiveKey(cardNumber));
+            assertEquals(cardNumber(i), encryptionService.decrypt(cardNumber));
+        }
+    }
+
+    @Test
+    void start_CardLoadedBeforeRotation_ShouldFailOptimisticLockOnSave() throws Exception {
+        // Given
+        Card staleCard = cardRepository.findById(cardIds.get(0)).orElseThrow();
+
+        // When
+        cardReEncryptionService.start();
+        awaitFinished();
+        staleCard.setBalance(BigDecimal.TEN);
+
+        // Then: устаревшая копия не вернет номер под прежним ключом
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> cardRepository.save(staleCard));
+        String cardNumber = cardRepository.findById(cardIds.get(0)).orElseThrow().getCardNumber();
+        assertTrue(encryptionService.isEncryptedWithActiveKey(cardNumber));
+    }
+
+    @Test
+    void setMaxRowsPerSecond_ShouldSlowDownRotation() throws Exception {
+        // Given
+        cardReEncryptionService.setMaxRowsPerSecond(20);
+        long started = System.nanoTime();
+
+        // When
+        cardReEncryptionService.start();
+        KeyRotationStatus status = awaitFinished();
+
+        // Then
+        // 10 строк порциями по 3 при 20 строк/с - не меньше 0.45 с на первые три порции
+        assertTrue(System.nanoTime() - started >= 450_000_000L);
+        assertEquals(20, status.getMaxRowsPerSecond());
+        assertEquals(0, status.getRemaining());
+        cardReEncryptionService.setMaxRowsPerSecond(0);
+    }
+
+    private KeyRotationStatus awaitFinished() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            KeyRotationStatus status = cardReEncryptionService.getStatus();
+            if (!status.isRunning()) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        fail("Re-encryption did not finish in time");
+        return null;
+    }
+
+    private static String cardNumber(int i) {
+        return String.format("5500%012d", i);
+    }
+}
@@ -1,7 +1,12 @@
 package com.bank.service;
 
+import com.bank.dto.BatchTransferResponse;
+import com.bank.dto.TransferCommand;
+import com.bank.dto.TransferRequest;
 import com.bank.entity.Card;
+import com.bank.entity.Transaction;
 import com.bank.entity.User;
+import com.bank.exception.BatchTransferRejectedException;
 import com.bank.exception.CardNotFoundException;
 import com.bank.exception.UnauthorizedAccessException;
 import com.bank.repository.CardRepository;
@@ -11,13 +16,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,6 +50,15 @@ class CardServiceTest {
     @Mock
     private AuditService auditService;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private HotCardService hotCardService;
+
     private CardService cardService;
 
     private User testUser;
@@ -50,7 +68,8 @@ class CardServiceTest {
     @BeforeEach
     void setUp() {
         cardService = new CardService(cardRepository, encryptionService, transactionService,
-                monitoringService, eventPublisher, auditService);
+                monitoringService, eventPublisher, auditService, idempotencyService, ledgerService,
+                hotCardService);
 
         testUser = User.builder()
                 .id(1L)
@@ -105,6 +124,35 @@ class CardServiceTest {
         assertEquals(testCard.getId(), result.getId());
     }
 
+    @Test
+    void getCardBalance_PessimisticStrategyRegularCard_ShouldNotQueryLedgerOrSlots() {
+        // Given
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+
+        // When
+        BigDecimal balance = cardService.getCardBalance(1L, testUser);
+
+        // Then
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance));
+        verifyNoInteractions(ledgerService, hotCardService);
+    }
+
+    @Test
+    void getCardBalance_LedgerStrategyHotCard_ShouldAddPendingEntriesAndSlots() {
+        // Given
+        ReflectionTestUtils.setField(cardService, "transferStrategy", CardService.TransferStrategy.LEDGER);
+        testCard.setBalanceSlots(4);
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(hotCardService.getTotalBalance(testCard)).thenReturn(new BigDecimal("1050.00"));
+        when(ledgerService.getPendingAmount(1L)).thenReturn(new BigDecimal("100.00"));
+
+        // When
+        BigDecimal balance = cardService.getCardBalance(1L, testUser);
+
+        // Then
+        assertEquals(0, new BigDecimal("1150.00").compareTo(balance));
+    }
+
     @Test
     void getCardById_CardNotFound_ShouldThrowException() {
         // Given
@@ -134,7 +182,8 @@ class CardServiceTest {
     @Test
     void getMaskedCardNumber_ShouldReturnMaskedNumber() {
         // Given
-        when(encryptionService.decrypt("encrypted1234567890123456")).thenReturn("1234567890123456");
+        when(encryptionService.decryptToBytes("encrypted1234567890123456"))
+                .thenReturn("1234567890123456".getBytes(StandardCharsets.UTF_8));
 
         // When
         String masked = cardService.getMaskedCardNumber("encrypted1234567890123456");
@@ -146,7 +195,7 @@ class CardServiceTest {
     @Test
     void getMaskedCardNumber_DecryptionFails_ShouldReturnDefault() {
         // Given
-        when(encryptionService.decrypt("invalid-encrypted")).thenThrow(new RuntimeException("Decryption error"));
+        when(encryptionService.decryptToBytes("invalid-encrypted")).thenThrow(new RuntimeException("Decryption error"));
 
         // When
         String masked = cardService.getMaskedCardNumber("invalid-encrypted");
@@ -154,4 +203,144 @@ class CardServiceTest {
         // Then
         assertEquals("**** **** **** ****", masked);
     }
+
+    @Test
+    void transferBatch_PartialFailure_ShouldApplyOnlyValidLegs() {
+        // Given
+        Card secondCard = Card.builder()
+                .id(2L)
+                .cardHolder("TEST USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(BigDecimal.ZERO)
+                .status(Card.CardStatus.ACTIVE)
+                .user(testUser)
+                .build();
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard, secondCard));
+
+        // When
+        BatchTransferResponse response = cardService.transferBatch(testUser, List.of(
+                transferLeg(1L, 2L, "100.00"),
+                transferLeg(2L, 1L, "500.00"),
+                transferLeg(1L, 3L, "10.00")
+        ), false);
+
+        // Then
+        assertTrue(response.isCommitted());
+        assertEquals(1, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertEquals(BatchTransferResponse.LegStatus.SUCCESS, response.getResults().get(0).getStatus());
+        assertEquals("Insufficient balance for transfer", response.getResults().get(1).getError());
+        assertEquals("Card not found with id: 3", response.getResults().get(2).getError());
+        assertEquals(0, new BigDecimal("900.00").compareTo(testCard.getBalance()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(secondCard.getBalance()));
+        verify(cardRepository, times(1)).findAllByIdForUpdate(any());
+        verify(transactionService).saveAllInBatch(argThat(transactions -> transactions.size() == 1));
+        verify(eventPublisher, times(1)).publishEvent(any());
+    }
+
+    @Test
+    void transferGroup_PartialFailure_ShouldAuditAsFailed() {
+        // Given
+        Card secondCard = Card.builder()
+                .id(2L)
+                .cardHolder("TEST USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(BigDecimal.ZERO)
+                .status(Card.CardStatus.ACTIVE)
+                .user(testUser)
+                .build();
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard, secondCard));
+
+        // When
+        List<BatchTransferResponse.LegResult> results = cardService.transferGroup(List.of(
+                new TransferCommand(testUser, transferLeg(1L, 2L, "100.00")),
+                new TransferCommand(testUser, transferLeg(2L, 1L, "500.00"))
+        ));
+
+        // Then
+        assertEquals(BatchTransferResponse.LegStatus.SUCCESS, results.get(0).getStatus());
+        assertEquals("Insufficient balance for transfer", results.get(1).getError());
+        verify(auditService).logActivity(eq("GROUP_TRANSFER"), anyString(), eq(false), any(), any(), any());
+    }
+
+    @Test
+    void transferBatch_AtomicWithFailedLeg_ShouldRejectWholeBatch() {
+        // Given
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(testCard));
+
+        // When & Then
+        BatchTransferRejectedException exception = assertThrows(BatchTransferRejectedException.class,
+                () -> cardService.transferBatch(testUser, List.of(
+                        transferLeg(1L, 1L, "100.00"),
+                        transferLeg(1L, 2L, "10.00")
+                ), true));
+
+        assertFalse(exception.getResponse().isCommitted());
+        assertEquals(2, exception.getResponse().getFailed());
+        verify(transactionService, never()).saveAllInBatch(anyList());
+    }
+
+    @Test
+    void transferBetweenCards_LedgerStrategy_ShouldAppendEntriesWithoutChangingBalances() {
+        // Given
+        ReflectionTestUtils.setField(cardService, "transferStrategy", CardService.TransferStrategy.LEDGER);
+        Card secondCard = Card.builder()
+                .id(2L)
+                .cardHolder("TEST USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(BigDecimal.ZERO)
+                .status(Card.CardStatus.ACTIVE)
+                .user(testUser)
+                .build();
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testCard));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(secondCard));
+        when(ledgerService.getBalanceForDebit(testCard)).thenReturn(new BigDecimal("1000.00"));
+        when(hotCardService.getSlotBalance(testCard)).thenReturn(BigDecimal.ZERO);
+        when(transactionService.saveTransaction(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        cardService.transferBetweenCards(testUser, 1L, 2L, new BigDecimal("100.00"));
+
+        // Then
+        assertEquals(0, new BigDecimal("1000.00").compareTo(testCard.getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(secondCard.getBalance()));
+        verify(cardRepository, never()).findByIdForUpdate(2L);
+        verify(ledgerService).recordTransfer(any(Transaction.class));
+    }
+
+    @Test
+    void transferBetweenCards_HotDestination_ShouldCreditSlotWithoutLockingDestination() {
+        // Given
+        Card hotCard = Card.builder()
+                .id(2L)
+                .cardHolder("MERCHANT")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(BigDecimal.ZERO)
+                .status(Card.CardStatus.ACTIVE)
+                .user(testUser)
+                .balanceSlots(8)
+                .build();
+        when(hotCardService.isHot(2L)).thenReturn(true);
+        when(hotCardService.getSlotBalance(testCard)).thenReturn(BigDecimal.ZERO);
+        when(cardRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(testCard));
+        when(cardRepository.findById(2L)).thenReturn(Optional.of(hotCard));
+        when(transactionService.saveTransaction(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        cardService.transferBetweenCards(testUser, 1L, 2L, new BigDecimal("100.00"));
+
+        // Then
+        assertEquals(0, new BigDecimal("900.00").compareTo(testCard.getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(hotCard.getBalance()));
+        verify(cardRepository, never()).findByIdForUpdate(2L);
+        verify(hotCardService).credit(hotCard, 1L, new BigDecimal("100.00"));
+    }
+
+    private TransferRequest transferLeg(Long fromCardId, Long toCardId, String amount) {
+        TransferRequest leg = new TransferRequest();
+        leg.setFromCardId(fromCardId);
+        leg.setToCardId(toCardId);
+        leg.setAmount(new BigDecimal(amount));
+        return leg;
+    }
 }
@@ -0,0 +1,225 @@
+package com.bank.service;
+
+import com.bank.dto.BatchTransferResponse;
+import com.bank.dto.TransferRequest;
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.AuditLogRepository;
+import com.bank.repository.BalanceSnapshotRepository;
+import com.bank.repository.CardBalanceSlotRepository;
+import com.bank.repository.CardRepository;
+import com.bank.repository.LedgerEntryRepository;
+import com.bank.repository.TransactionRepository;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CardTransferConcurrencyTest {
+
+    private static final int TRANSFER_COUNT = 2000;
+    private static final int THREAD_COUNT = 16;
+    protected static final BigDecimal INITIAL_BALANCE = new BigDecimal("10000.00");
+
+    @Autowired
+    protected CardService cardService;
+
+    @Autowired
+    private GroupCommitTransferService groupCommitTransferService;
+
+    @Autowired
+    private MonitoringService monitoringService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private CardBalanceSlotRepository cardBalanceSlotRepository;
+
+    protected User owner;
+    protected final List<Long> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("concurrency-user")
+                .password("password")
+                .email("concurrency@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+
+        for (int i = 0; i < cardCount(); i++) {
+            Card card = cardRepository.save(Card.builder()
+                    .cardNumber("encrypted-concurrency-" + i)
+                    .cardHolder("CONCURRENCY USER")
+                    .expiryDate(LocalDate.now().plusYears(2))
+                    .balance(INITIAL_BALANCE)
+                    .status(Card.CardStatus.ACTIVE)
+                    .user(owner)
+                    .build());
+            cardIds.add(card.getId());
+        }
+    }
+
+    // Количество карт определяет уровень конкуренции: чем меньше карт, тем "горячее" каждая из них
+    protected int cardCount() {
+        return 4;
+    }
+
+    @AfterEach
+    void tearDown() {
+        balanceSnapshotRepository.deleteAll();
+        ledgerEntryRepository.deleteAll();
+        cardBalanceSlotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        auditLogRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    // Баланс читается так же, как его видит API: с учетом несвернутых записей журнала
+    protected BigDecimal totalBalance() {
+        return cardIds.stream()
+                .map(cardId -> cardService.getCardBalance(cardId, owner))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Test
+    void parallelTransfersBetweenHotCards_ShouldConserveTotalBalance() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        int cardCount = cardCount();
+        for (int i = 0; i < TRANSFER_COUNT; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(cardCount);
+                int to = (from + 1 + random.nextInt(cardCount - 1)) % cardCount;
+                try {
+                    cardService.transferBetweenCards(owner, cardIds.get(from), cardIds.get(to), BigDecimal.ONE);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // Then
+        BigDecimal total = totalBalance();
+
+        assertEquals(0, failures.get(), "No transfer should fail with deadlock or lock timeout");
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardCount)).compareTo(total));
+        assertEquals(TRANSFER_COUNT, transactionRepository.count());
+    }
+
+    @Test
+    void parallelBatchTransfers_ShouldConserveTotalBalance() throws Exception {
+        // Given
+        int batchCount = TRANSFER_COUNT / 10;
+        int cardCount = cardCount();
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        List<Future<BatchTransferResponse>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < batchCount; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<TransferRequest> legs = new ArrayList<>();
+                for (int leg = 0; leg < 10; leg++) {
+                    int from = random.nextInt(cardCount);
+                    int to = (from + 1 + random.nextInt(cardCount - 1)) % cardCount;
+                    TransferRequest request = new TransferRequest();
+                    request.setFromCardId(cardIds.get(from));
+                    request.setToCardId(cardIds.get(to));
+                    request.setAmount(BigDecimal.ONE);
+                    legs.add(request);
+                }
+                return cardService.transferBatch(owner, legs, true);
+            }));
+        }
+        int succeededLegs = 0;
+        for (Future<BatchTransferResponse> future : futures) {
+            succeededLegs += future.get(2, TimeUnit.MINUTES).getSucceeded();
+        }
+        executor.shutdown();
+
+        // Then
+        BigDecimal total = totalBalance();
+
+        assertEquals(batchCount * 10, succeededLegs);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardCount)).compareTo(total));
+        assertEquals(batchCount * 10L, transactionRepository.count());
+    }
+
+    @Test
+    void parallelAsyncTransfers_ShouldCommitInGroupsAndConserveTotalBalance() throws Exception {
+        // Given
+        int cardCount = cardCount();
+        long groupsBefore = monitoringService.getMetric("transfer.groups");
+        List<CompletableFuture<BatchTransferResponse.LegResult>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < TRANSFER_COUNT; i++) {
+            int from = i % cardCount;
+            int to = (from + 1) % cardCount;
+            TransferRequest request = new TransferRequest();
+            request.setFromCardId(cardIds.get(from));
+            request.setToCardId(cardIds.get(to));
+            request.setAmount(BigDecimal.ONE);
+            futures.add(groupCommitTransferService.submit(owner, request));
+        }
+        int succeeded = 0;
+        for (CompletableFuture<BatchTransferResponse.LegResult> future : futures) {
+            if (future.get(2, TimeUnit.MINUTES).getStatus() == BatchTransferResponse.LegStatus.SUCCESS) {
+                succeeded++;
+            }
+        }
+        long groups = monitoringService.getMetric("transfer.groups") - groupsBefore;
+
+        // Then
+        assertEquals(TRANSFER_COUNT, succeeded);
+        assertTrue(groups < TRANSFER_COUNT, "Transfers should be committed in groups");
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardCount)).compareTo(totalBalance()));
+        assertEquals(TRANSFER_COUNT, transactionRepository.count());
+    }
+}
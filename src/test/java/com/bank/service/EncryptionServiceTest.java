@@ -2,6 +2,20 @@ package com.bank.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EncryptionServiceTest {
@@ -38,4 +52,108 @@ class EncryptionServiceTest {
     void decrypt_NullInput_ShouldReturnNull() {
         assertNull(encryptionService.decrypt(null));
     }
+
+    @Test
+    void byteOverloads_ShouldMatchStringApi() {
+        // Given
+        String originalText = "4111111111111111";
+
+        // When
+        String encrypted = encryptionService.encrypt(originalText);
+        byte[] decrypted = encryptionService.decryptToBytes(encrypted);
+
+        // Then
+        assertArrayEquals(originalText.getBytes(StandardCharsets.UTF_8), decrypted);
+        assertArrayEquals(decrypted, encryptionService.decryptBytes(encryptionService.encryptBytes(decrypted)));
+    }
+
+    @Test
+    void decrypt_InvalidInput_ShouldNotBreakSubsequentCalls() {
+        // Given
+        String encrypted = encryptionService.encrypt("1234567890123456");
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt("bm90LWEtY2lwaGVydGV4dA=="));
+        assertEquals("1234567890123456", encryptionService.decrypt(encrypted));
+    }
+
+    @Test
+    void encrypt_SamePlaintext_ShouldProduceDifferentCiphertexts() {
+        // When
+        String first = encryptionService.encrypt("1234567890123456");
+        String second = encryptionService.encrypt("1234567890123456");
+
+        // Then
+        assertTrue(first.startsWith("v1:"));
+        assertNotEquals(first, second);
+        assertEquals(encryptionService.decrypt(first), encryptionService.decrypt(second));
+    }
+
+    @Test
+    void decrypt_TamperedCiphertext_ShouldThrow() {
+        // Given
+        byte[] encrypted = encryptionService.encryptBytes("1234567890123456".getBytes(StandardCharsets.UTF_8));
+        encrypted[encrypted.length - 1] ^= 1;
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> encryptionService.decryptBytes(encrypted));
+    }
+
+    @Test
+    void decrypt_LegacyEcbCiphertext_ShouldStillWork() throws Exception {
+        // Given
+        byte[] keyBytes = Arrays.copyOf("test-encryption-key-32-chars-long!".getBytes(StandardCharsets.UTF_8), 32);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyBytes, "AES"));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal("1234567890123456".getBytes(StandardCharsets.UTF_8)));
+
+        // When & Then
+        assertEquals("1234567890123456", encryptionService.decrypt(legacy));
+    }
+
+    @Test
+    void reEncrypt_AfterKeyRotation_ShouldUseActiveKeyAndKeepOldValuesReadable() {
+        // Given
+        String oldValue = encryptionService.encrypt("1234567890123456");
+        EncryptionService rotated = new EncryptionService(Map.of(
+                "v1", "test-encryption-key-32-chars-long!",
+                "v2", "rotated-encryption-key-32-chars-long"), "v2");
+
+        // When
+        String reEncrypted = rotated.reEncrypt(oldValue);
+
+        // Then
+        assertFalse(rotated.isEncryptedWithActiveKey(oldValue));
+        assertTrue(rotated.isEncryptedWithActiveKey(reEncrypted));
+        assertTrue(reEncrypted.startsWith("v2:"));
+        assertEquals("1234567890123456", rotated.decrypt(oldValue));
+        assertEquals("1234567890123456", rotated.decrypt(reEncrypted));
+        assertThrows(RuntimeException.class, () -> encryptionService.decrypt(reEncrypted));
+    }
+
+    @Test
+    void constructor_UnknownActiveKey_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EncryptionService(Map.of("v1", "test-encryption-key-32-chars-long!"), "v2"));
+    }
+
+    @Test
+    void encryptAndDecrypt_ConcurrentThreads_ShouldNotInterfere() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            String cardNumber = String.format("4000%012d", i);
+            futures.add(executor.submit(() ->
+                    cardNumber.equals(encryptionService.decrypt(encryptionService.encrypt(cardNumber)))));
+        }
+
+        // Then
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
 }
@@ -0,0 +1,102 @@
+package com.bank.service;
+
+import com.bank.dto.BatchTransferResponse;
+import com.bank.dto.TransferCommand;
+import com.bank.dto.TransferRequest;
+import com.bank.entity.User;
+import com.bank.exception.TransferQueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitTransferServiceTest {
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private MonitoringService monitoringService;
+
+    private GroupCommitTransferService groupCommitTransferService;
+
+    private final User user = User.builder().id(1L).username("testuser").role(User.Role.ROLE_USER).build();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        groupCommitTransferService.stop();
+    }
+
+    @Test
+    void submit_ShouldCompleteAfterGroupCommit() throws Exception {
+        // Given
+        groupCommitTransferService = new GroupCommitTransferService(cardService, monitoringService, 10, 10);
+        when(cardService.transferGroup(anyList())).thenAnswer(invocation -> {
+            List<TransferCommand> commands = invocation.getArgument(0);
+            return commands.stream()
+                    .map(command -> new BatchTransferResponse.LegResult(0, command.getRequest().getFromCardId(),
+                            command.getRequest().getToCardId(), command.getRequest().getAmount(),
+                            BatchTransferResponse.LegStatus.SUCCESS, null))
+                    .toList();
+        });
+        groupCommitTransferService.start();
+
+        // When
+        CompletableFuture<BatchTransferResponse.LegResult> future =
+                groupCommitTransferService.submit(user, transferRequest(1L, 2L));
+
+        // Then
+        BatchTransferResponse.LegResult result = future.get(5, TimeUnit.SECONDS);
+        assertEquals(BatchTransferResponse.LegStatus.SUCCESS, result.getStatus());
+        assertEquals(2L, result.getToCardId());
+        verify(monitoringService, timeout(1000)).recordGroupCommit(eq(1), eq(0), anyLong());
+    }
+
+    @Test
+    void submit_QueueFull_ShouldRejectImmediately() throws Exception {
+        // Given
+        groupCommitTransferService = new GroupCommitTransferService(cardService, monitoringService, 1, 10);
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(cardService.transferGroup(anyList())).thenAnswer(invocation -> {
+            committing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(new BatchTransferResponse.LegResult(0, 1L, 2L, BigDecimal.ONE,
+                    BatchTransferResponse.LegStatus.SUCCESS, null));
+        });
+        groupCommitTransferService.start();
+
+        // When
+        groupCommitTransferService.submit(user, transferRequest(1L, 2L));
+        assertTrue(committing.await(5, TimeUnit.SECONDS));
+        groupCommitTransferService.submit(user, transferRequest(1L, 2L));
+
+        // Then
+        assertThrows(TransferQueueFullException.class,
+                () -> groupCommitTransferService.submit(user, transferRequest(1L, 2L)));
+        verify(monitoringService).recordTransferQueueRejected();
+        release.countDown();
+    }
+
+    private TransferRequest transferRequest(Long fromCardId, Long toCardId) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(fromCardId);
+        request.setToCardId(toCardId);
+        request.setAmount(BigDecimal.ONE);
+        return request;
+    }
+}
@@ -0,0 +1,168 @@
+package com.bank.service;
+
+import com.bank.entity.Card;
+import com.bank.entity.User;
+import com.bank.repository.AuditLogRepository;
+import com.bank.repository.CardBalanceSlotRepository;
+import com.bank.repository.CardRepository;
+import com.bank.repository.TransactionRepository;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Параллельные зачисления на одну карту при разном числе слотов баланса: деньги не теряются
+// и не задваиваются. Пропускную способность по числу слотов замеряет HotCardCreditBenchmark
+@SpringBootTest
+@ActiveProfiles("test")
+class HotCardCreditConcurrencyTest {
+
+    private static final int SOURCE_COUNT = 16;
+    private static final int CREDITS_PER_RUN = 800;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("10000.00");
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private HotCardService hotCardService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardBalanceSlotRepository cardBalanceSlotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    private User owner;
+    private Long targetCardId;
+    private final List<Long> sourceCardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .username("hot-card-user")
+                .password("password")
+                .email("hot-card@bank.com")
+                .role(User.Role.ROLE_USER)
+                .build());
+
+        targetCardId = createCard("hot-target", BigDecimal.ZERO).getId();
+        for (int i = 0; i < SOURCE_COUNT; i++) {
+            sourceCardIds.add(createCard("hot-source-" + i, INITIAL_BALANCE).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardBalanceSlotRepository.deleteAll();
+        transactionRepository.deleteAll();
+        auditLogRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void parallelCreditsToOneCard_ShouldConserveTotalBalanceForEverySlotCount() throws Exception {
+        // When: зачисления с переключением числа слотов между сериями, в том числе обратно в 0
+        int[] slotCounts = {0, 1, 4, 16, 0};
+        for (int slots : slotCounts) {
+            hotCardService.setBalanceSlots(targetCardId, slots);
+            runCredits();
+        }
+
+        // Then
+        BigDecimal total = cardService.getCardBalance(targetCardId, owner);
+        for (Long sourceCardId : sourceCardIds) {
+            total = total.add(cardService.getCardBalance(sourceCardId, owner));
+        }
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(SOURCE_COUNT)).compareTo(total));
+        assertEquals(0, BigDecimal.valueOf((long) CREDITS_PER_RUN * slotCounts.length)
+                .compareTo(cardService.getCardBalance(targetCardId, owner)));
+        assertEquals((long) CREDITS_PER_RUN * slotCounts.length, transactionRepository.count());
+    }
+
+    @Test
+    void balanceReads_WhileCompacting_ShouldNeverMissCompactedAmount() throws Exception {
+        // Given
+        hotCardService.setBalanceSlots(targetCardId, 4);
+        AtomicBoolean compacting = new AtomicBoolean(true);
+        ExecutorService background = Executors.newFixedThreadPool(2);
+        Future<?> compactor = background.submit(() -> {
+            while (compacting.get()) {
+                hotCardService.compactHotCards();
+            }
+        });
+        Future<?> credits = background.submit(() -> {
+            runCredits();
+            return null;
+        });
+
+        // When & Then: на карту только зачисления, поэтому прочитанный баланс не может уменьшиться
+        BigDecimal previous = BigDecimal.ZERO;
+        int reads = 0;
+        while (!credits.isDone()) {
+            BigDecimal balance = cardService.getCardBalance(targetCardId, owner);
+            assertTrue(balance.compareTo(previous) >= 0,
+                    "Balance went back from " + previous + " to " + balance + " during compaction");
+            previous = balance;
+            reads++;
+        }
+        credits.get();
+        compacting.set(false);
+        compactor.get(1, TimeUnit.MINUTES);
+        background.shutdown();
+
+        assertTrue(reads > 0);
+        assertEquals(0, BigDecimal.valueOf(CREDITS_PER_RUN).compareTo(cardService.getCardBalance(targetCardId, owner)));
+    }
+
+    private void runCredits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SOURCE_COUNT);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CREDITS_PER_RUN; i++) {
+            Long sourceCardId = sourceCardIds.get(i % SOURCE_COUNT);
+            futures.add(executor.submit(() ->
+                    cardService.transferBetweenCards(owner, sourceCardId, targetCardId, BigDecimal.ONE)));
+        }
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    private Card createCard(String cardNumber, BigDecimal balance) {
+        return cardRepository.save(Card.builder()
+                .cardNumber(cardNumber)
+                .cardHolder("HOT CARD USER")
+                .expiryDate(LocalDate.now().plusYears(2))
+                .balance(balance)
+                .status(Card.CardStatus.ACTIVE)
+                .user(owner)
+                .build());
+    }
+}
@@ -0,0 +1,84 @@
+package com.bank.service;
+
+import com.bank.entity.IdempotencyRecord;
+import com.bank.exception.DuplicateIdempotencyKeyException;
+import com.bank.exception.IdempotencyKeyMismatchException;
+import com.bank.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository, 24, 1000);
+    }
+
+    @Test
+    void transferFingerprint_ShouldIgnoreAmountScale() {
+        // When & Then
+        assertEquals(IdempotencyService.transferFingerprint(1L, 2L, new BigDecimal("100")),
+                IdempotencyService.transferFingerprint(1L, 2L, new BigDecimal("100.00")));
+    }
+
+    @Test
+    void register_DuplicateKey_ShouldThrowDuplicateIdempotencyKeyException() {
+        // Given
+        when(idempotencyRecordRepository.save(any(IdempotencyRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // When & Then
+        assertThrows(DuplicateIdempotencyKeyException.class,
+                () -> idempotencyService.register("user", "key", "1:2:100", 200, "ok"));
+    }
+
+    @Test
+    void findCached_RememberedResponse_ShouldNotHitRepository() {
+        // Given
+        idempotencyService.remember("user", "key",
+                new IdempotencyService.StoredResponse("1:2:100", 200, "ok"));
+
+        // When
+        Optional<IdempotencyService.StoredResponse> response = idempotencyService.findCached("user", "key", "1:2:100");
+
+        // Then
+        assertTrue(response.isPresent());
+        assertEquals("ok", response.get().getBody());
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    void findStored_DifferentFingerprint_ShouldThrowMismatch() {
+        // Given
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .idempotencyKey("key")
+                .username("user")
+                .requestFingerprint("1:2:100")
+                .responseStatus(200)
+                .responseBody("ok")
+                .build();
+        when(idempotencyRecordRepository.findByUsernameAndIdempotencyKey("user", "key"))
+                .thenReturn(Optional.of(record));
+
+        // When & Then
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyService.findStored("user", "key", "1:2:500"));
+    }
+}
@@ -0,0 +1,213 @@
+package com.bank.service;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRateLimitStoreTest {
+
+    // Та же структура, что в миграции 013-create-rate-limit-buckets-table
+    static final String CREATE_TABLE_SQL = "CREATE TABLE rate_limit_buckets ("
+            + "bucket_key VARCHAR(512) PRIMARY KEY, window_start BIGINT NOT NULL, "
+            + "window_end BIGINT NOT NULL, granted INT NOT NULL)";
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final RateLimitStore.Key KEY = new RateLimitStore.Key("API_REQUEST", "10.0.0.1");
+    private static final RateLimitStore.Limit PER_MINUTE = new RateLimitStore.Limit(100, Duration.ofMinutes(1));
+
+    private JdbcConnectionPool dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private AtomicLong clock;
+    private MonitoringService monitoringService;
+    private JdbcRateLimitStore store;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = JdbcConnectionPool.create("jdbc:h2:mem:ratelimit-" + UUID.randomUUID(), "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        clock = new AtomicLong(NOW);
+        monitoringService = new MonitoringService();
+        store = newNode(monitoringService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Test
+    void tryAcquire_WithinWindow_ShouldBorrowPermitsInLeases() {
+        // When
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.tryAcquire(KEY, PER_MINUTE).allowed());
+        }
+
+        // Then
+        assertFalse(store.tryAcquire(KEY, PER_MINUTE).allowed());
+        assertFalse(store.tryAcquire(KEY, PER_MINUTE).allowed());
+        // Десять аренд по 10 разрешений и одна пустая; повторный отказ без похода в БД
+        assertEquals(11, monitoringService.getMetric("ratelimit.lease.borrows"));
+        assertEquals(100, grantedInTable());
+    }
+
+    @Test
+    void tryAcquire_NextWindow_ShouldStartFromZero() {
+        // Given
+        for (int i = 0; i < 100; i++) {
+            store.tryAcquire(KEY, PER_MINUTE);
+        }
+        assertFalse(store.tryAcquire(KEY, PER_MINUTE).allowed());
+
+        // When
+        clock.addAndGet(Duration.ofMinutes(1).toMillis());
+
+        // Then
+        assertTrue(store.tryAcquire(KEY, PER_MINUTE).allowed());
+        assertEquals(10, grantedInTable());
+    }
+
+    @Test
+    void reconcile_IdleLease_ShouldReturnUnusedPermitsToOtherNodes() {
+        // Given
+        JdbcRateLimitStore otherNode = newNode(new MonitoringService());
+        assertTrue(store.tryAcquire(KEY, PER_MINUTE).allowed());
+        int allowedOnOtherNode = 0;
+        while (otherNode.tryAcquire(KEY, PER_MINUTE).allowed()) {
+            allowedOnOtherNode++;
+        }
+        assertEquals(90, allowedOnOtherNode);
+
+        // When
+        clock.addAndGet(2_000);
+        store.reconcile();
+        otherNode.reconcile();
+
+        // Then
+        while (otherNode.tryAcquire(KEY, PER_MINUTE).allowed()) {
+            allowedOnOtherNode++;
+        }
+        assertEquals(99, allowedOnOtherNode);
+        assertEquals(100, grantedInTable());
+    }
+
+    @Test
+    void reconcile_ClosedWindows_ShouldBePurged() {
+        // Given
+        store.tryAcquire(KEY, PER_MINUTE);
+
+        // When
+        clock.addAndGet(Duration.ofMinutes(2).toMillis());
+        store.reconcile();
+
+        // Then
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_buckets", Integer.class));
+    }
+
+    @Test
+    void tryAcquire_SeveralJvmsSharingTable_ShouldHoldGlobalLimit() throws Exception {
+        // Given
+        int nodes = 3;
+        int capacity = 300;
+        int threads = 4;
+        int attemptsPerThread = 200;
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Server server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+        String url = "jdbc:h2:tcp://localhost:" + port
+                + "/mem:ratelimit-cluster;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+        JdbcConnectionPool sharedDataSource = JdbcConnectionPool.create(url, "sa", "");
+        List<Process> processes = new ArrayList<>();
+        try {
+            new JdbcTemplate(sharedDataSource).execute(CREATE_TABLE_SQL);
+
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 0; i < nodes; i++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        RateLimitClusterNode.class.getName(), url, String.valueOf(NOW),
+                        String.valueOf(capacity), String.valueOf(threads), String.valueOf(attemptsPerThread))
+                        .redirectErrorStream(true)
+                        .start());
+            }
+            List<BufferedReader> outputs = new ArrayList<>();
+            for (Process process : processes) {
+                BufferedReader output = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                awaitLine(output, "ready");
+                outputs.add(output);
+            }
+
+            // When
+            for (Process process : processes) {
+                Writer input = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+                input.write("go\n");
+                input.flush();
+            }
+            int allowed = 0;
+            long borrows = 0;
+            for (int i = 0; i < nodes; i++) {
+                String[] result = awaitLine(outputs.get(i), "allowed=").split(" ");
+                allowed += Integer.parseInt(result[0].substring("allowed=".length()));
+                borrows += Long.parseLong(result[1].substring("borrows=".length()));
+                assertTrue(processes.get(i).waitFor(60, TimeUnit.SECONDS));
+                assertEquals(0, processes.get(i).exitValue());
+            }
+
+            // Then
+            // Сверх лимита не пропускает ни один узел; недодать можно не больше одной аренды на узел
+            assertTrue(allowed <= capacity, "allowed " + allowed + " exceeds " + capacity);
+            assertTrue(allowed >= capacity - nodes * 10, "allowed " + allowed + " of " + capacity);
+            assertTrue(new JdbcTemplate(sharedDataSource).queryForObject(
+                    "SELECT granted FROM rate_limit_buckets", Integer.class) <= capacity);
+            // Большинство проверок не выходит за пределы JVM
+            assertTrue(borrows < (long) nodes * threads * attemptsPerThread / 10, "borrows " + borrows);
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+            sharedDataSource.dispose();
+            server.stop();
+        }
+    }
+
+    private JdbcRateLimitStore newNode(MonitoringService nodeMonitoringService) {
+        return new JdbcRateLimitStore(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                nodeMonitoringService, 10, 1_000, 1000, clock::get);
+    }
+
+    private int grantedInTable() {
+        return jdbcTemplate.queryForObject("SELECT granted FROM rate_limit_buckets WHERE bucket_key = ?",
+                Integer.class, KEY.policy() + ':' + KEY.subject());
+    }
+
+    private static String awaitLine(BufferedReader output, String prefix) throws Exception {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new IllegalStateException("Cluster node exited before printing " + prefix);
+    }
+}
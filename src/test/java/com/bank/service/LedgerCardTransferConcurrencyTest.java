@@ -0,0 +1,94 @@
+package com.bank.service;
+
+import com.bank.dto.LedgerReconciliationReport;
+import com.bank.dto.TransferRequest;
+import com.bank.entity.Transaction;
+import com.bank.repository.CardRepository;
+import com.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тот же сценарий на журнале проводок: снимки создаются часто, чтобы свертка шла параллельно с переводами.
+// Фоновая свертка отключена, чтобы не пересекаться с очисткой таблиц между тестами
+@TestPropertySource(properties = {
+        "app.transfer.strategy=LEDGER",
+        "app.ledger.snapshot-every=20",
+        "app.ledger.fold-interval-ms=3600000"
+})
+class LedgerCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Test
+    void foldedSnapshots_ShouldReconcileWithTransactions() throws Exception {
+        // Given: одиночные переводы и пакеты, части которых тоже идут через журнал
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 400; i++) {
+            int from = i % cardIds.size();
+            int to = (from + 1) % cardIds.size();
+            if (i % 10 == 0) {
+                executor.submit(() -> cardService.transferBatch(owner,
+                        List.of(leg(from, to), leg(to, from), leg(from, to)), true));
+            } else {
+                executor.submit(() -> cardService.transferBetweenCards(owner, cardIds.get(from), cardIds.get(to), BigDecimal.ONE));
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        // When
+        ledgerService.foldPendingEntries();
+        LedgerReconciliationReport report = ledgerService.reconcile(true);
+
+        // Then
+        assertTrue(report.getCheckedCards() >= cardIds.size());
+        assertTrue(report.isConsistent(), "Mismatched cards: " + report.getMismatches().size());
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardIds.size())).compareTo(totalBalance()));
+    }
+
+    @Test
+    void reconcile_TransactionWithoutLedgerEntries_ShouldReportBothCards() {
+        // Given: строка transactions, не отраженная ни в журнале, ни в балансах
+        cardService.transferBetweenCards(owner, cardIds.get(0), cardIds.get(1), BigDecimal.ONE);
+        transactionRepository.save(Transaction.builder()
+                .fromCard(cardRepository.getReferenceById(cardIds.get(2)))
+                .toCard(cardRepository.getReferenceById(cardIds.get(3)))
+                .amount(BigDecimal.TEN)
+                .status(Transaction.TransactionStatus.SUCCESS)
+                .build());
+
+        // When
+        LedgerReconciliationReport report = ledgerService.reconcile(true);
+
+        // Then
+        assertEquals(List.of(cardIds.get(2), cardIds.get(3)), report.getMismatches().stream()
+                .map(LedgerReconciliationReport.Mismatch::getCardId)
+                .toList());
+        assertEquals(0, INITIAL_BALANCE.subtract(BigDecimal.TEN)
+                .compareTo(report.getMismatches().get(0).getExpectedBalance()));
+    }
+
+    private TransferRequest leg(int from, int to) {
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(cardIds.get(from));
+        request.setToCardId(cardIds.get(to));
+        request.setAmount(BigDecimal.ONE);
+        return request;
+    }
+}
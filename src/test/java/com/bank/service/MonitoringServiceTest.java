@@ -1,17 +1,23 @@
 package com.bank.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MonitoringServiceTest {
 
+    private SimpleMeterRegistry registry;
     private MonitoringService monitoringService;
 
     @BeforeEach
     void setUp() {
-        monitoringService = new MonitoringService();
+        registry = new SimpleMeterRegistry();
+        monitoringService = new MonitoringService(registry);
     }
 
     @Test
@@ -36,4 +42,73 @@ class MonitoringServiceTest {
     void getMetric_NonExistentMetric_ShouldReturnZero() {
         assertEquals(0, monitoringService.getMetric("nonexistent.metric"));
     }
+
+    @Test
+    void recordLogins_ShouldTagRegistryCounterByOutcome() {
+        monitoringService.recordSuccessfulLogin("testuser");
+        monitoringService.recordSuccessfulLogin("testuser");
+        monitoringService.recordFailedLogin("testuser");
+
+        assertEquals(2, registry.get("auth.login").tag("outcome", "success").counter().count());
+        assertEquals(1, registry.get("auth.login").tag("outcome", "failure").counter().count());
+    }
+
+    @Test
+    void getAllMetrics_ShouldKeepFlatNamesAcrossTaggedCounters() {
+        monitoringService.recordTransfer("user1", "user2", new BigDecimal("100.00"));
+        monitoringService.recordBatchTransfer("user1", 3, 1);
+        monitoringService.recordGroupCommit(5, 0, 12);
+
+        Map<String, Long> metrics = monitoringService.getAllMetrics();
+
+        assertEquals(9, metrics.get("transfer.completed"));
+        assertEquals(1, metrics.get("transfer.groups"));
+        assertEquals(5, metrics.get("transfer.group.size.max"));
+        assertEquals(12, metrics.get("transfer.group.commit.ms.total"));
+        assertEquals(0, metrics.get("login.failure"));
+    }
+
+    @Test
+    void recordRateLimitDecision_ShouldFillPerPolicyHistograms() {
+        monitoringService.recordRateLimitDecision("api", new RateLimitStore.Decision(true, 100, 80, 60, 0));
+        monitoringService.recordRateLimitDecision("api", new RateLimitStore.Decision(true, 100, 5, 60, 0));
+        monitoringService.recordRateLimitDecision("api", new RateLimitStore.Decision(false, 100, 0, 60, 7200));
+
+        assertEquals(2, registry.get("ratelimit.decisions").tags("policy", "api", "outcome", "allowed")
+                .counter().count());
+        assertEquals(1, monitoringService.getMetric("ratelimit.api.usage.le.50"));
+        assertEquals(0, monitoringService.getMetric("ratelimit.api.usage.le.75"));
+        assertEquals(1, monitoringService.getMetric("ratelimit.api.usage.le.100"));
+        assertEquals(1, monitoringService.getMetric("ratelimit.api.retry-after.le.inf"));
+        assertEquals(1, monitoringService.getMetric("ratelimit.api.rejected"));
+    }
+
+    @Test
+    void recordRequestLatency_ShouldPublishPercentilesPerPhase() {
+        RequestLatency latency = RequestLatency.start();
+        try (RequestLatency.Scope ignored = RequestLatency.enter(RequestLatency.Phase.DB_READ)) {
+            busyWait(TimeUnit.MILLISECONDS.toNanos(2));
+        }
+        RequestLatency.finish(latency);
+
+        monitoringService.recordRequestLatency("card.get", latency);
+
+        Map<String, Map<String, Double>> phases = monitoringService.getLatencySnapshot().get("card.get");
+        assertEquals(Set.of("total", "db.read", "other"), phases.keySet());
+        Map<String, Double> total = phases.get("total");
+        assertEquals(1.0, total.get("count"));
+        assertTrue(total.keySet().containsAll(Set.of("p50", "p90", "p99", "p99.9", "max")));
+        assertTrue(phases.get("db.read").get("max") >= 2.0);
+        assertEquals(1, registry.get("request.latency")
+                .tags("operation", "card.get", "phase", "db.read").timer().count());
+        assertEquals(0, registry.get("request.latency")
+                .tags("operation", "card.get", "phase", "audit").timer().count());
+    }
+
+    private static void busyWait(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package com.bank.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+// Тот же сценарий, что и в CardTransferConcurrencyTest, но с проверкой версий и повтором вместо блокировок.
+// Оптимистичная стратегия рассчитана на низкую конкуренцию, поэтому переводы распределены по большему числу карт
+@TestPropertySource(properties = {
+        "app.transfer.strategy=OPTIMISTIC",
+        "app.transfer.retry.max-attempts=20"
+})
+class OptimisticCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+
+    @Override
+    protected int cardCount() {
+        return 64;
+    }
+}
@@ -0,0 +1,63 @@
+package com.bank.service;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Узел кластера для JdbcRateLimitStoreTest: отдельная JVM со своим JdbcRateLimitStore над общей БД.
+// Сообщает "ready", ждет "go" на stdin, чтобы узлы конкурировали одновременно,
+// и печатает итог строкой "allowed=<разрешено> borrows=<походов в БД>"
+public final class RateLimitClusterNode {
+
+    static final RateLimitStore.Key KEY = new RateLimitStore.Key("CLUSTER", "shared-subject");
+
+    private RateLimitClusterNode() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        long now = Long.parseLong(args[1]);
+        RateLimitStore.Limit limit = new RateLimitStore.Limit(Integer.parseInt(args[2]), Duration.ofHours(1));
+        int threads = Integer.parseInt(args[3]);
+        int attemptsPerThread = Integer.parseInt(args[4]);
+
+        JdbcConnectionPool dataSource = JdbcConnectionPool.create(url, "sa", "");
+        MonitoringService monitoringService = new MonitoringService();
+        JdbcRateLimitStore store = new JdbcRateLimitStore(new JdbcTemplate(dataSource),
+                new DataSourceTransactionManager(dataSource), monitoringService, 10, 60_000, 1000, () -> now);
+
+        System.out.println("ready");
+        System.out.flush();
+        new BufferedReader(new InputStreamReader(System.in)).readLine();
+
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (store.tryAcquire(KEY, limit).allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            System.exit(2);
+        }
+
+        System.out.println("allowed=" + allowed.get()
+                + " borrows=" + monitoringService.getMetric("ratelimit.lease.borrows"));
+        System.out.flush();
+        dataSource.dispose();
+        System.exit(0);
+    }
+}
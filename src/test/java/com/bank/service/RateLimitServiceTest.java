@@ -0,0 +1,171 @@
+package com.bank.service;
+
+import com.bank.config.RateLimitProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitServiceTest {
+
+    private MonitoringService monitoringService;
+    private InMemoryRateLimitStore rateLimitStore;
+    private RateLimitProperties properties;
+    private RateLimitService rateLimitService;
+
+    @BeforeEach
+    void setUp() {
+        monitoringService = new MonitoringService();
+        rateLimitStore = new InMemoryRateLimitStore(monitoringService, 2);
+        properties = new RateLimitProperties();
+        properties.getPolicies().put("api", policy(100, Duration.ofMinutes(1)));
+        properties.getPolicies().put("login", policy(5, Duration.ofHours(1)));
+        properties.getPolicies().put("transfer", policy(10, Duration.ofDays(1)));
+        properties.getPolicies().put("integration-transfer", policy(1000, Duration.ofDays(1)));
+        properties.getRoutes().add(route("/api/cards/transfer", "transfer"));
+        properties.getRoutes().add(route("/api/cards/transfers/**", "transfer"));
+        properties.getPrincipals().put("integration-client", Map.of("transfer", "integration-transfer"));
+        rateLimitService = new RateLimitService(rateLimitStore, properties, monitoringService);
+    }
+
+    @Test
+    void tryAcquire_LoginAttempts_ShouldRejectAfterLimit() {
+        // When
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimitService.tryAcquire("10.0.0.1", RateLimitService.LOGIN_POLICY).allowed());
+        }
+
+        // Then
+        assertFalse(rateLimitService.tryAcquire("10.0.0.1", RateLimitService.LOGIN_POLICY).allowed());
+        assertTrue(rateLimitService.tryAcquire("10.0.0.2", RateLimitService.LOGIN_POLICY).allowed());
+    }
+
+    @Test
+    void tryAcquire_ShouldRecordDecisionsPerPolicy() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            rateLimitService.tryAcquire("10.0.0.1", RateLimitService.LOGIN_POLICY);
+        }
+
+        // When
+        RateLimitStore.Decision decision = rateLimitService.tryAcquire("10.0.0.1", RateLimitService.LOGIN_POLICY);
+
+        // Then
+        assertFalse(decision.allowed());
+        assertEquals(5, monitoringService.getMetric("ratelimit.login.allowed"));
+        assertEquals(1, monitoringService.getMetric("ratelimit.login.rejected"));
+        // Пятый вход израсходовал лимит целиком; до следующего токена - 12 минут
+        assertEquals(1, monitoringService.getMetric("ratelimit.login.usage.le.100"));
+        assertEquals(1, monitoringService.getMetric("ratelimit.login.retry-after.le.3600"));
+    }
+
+    @Test
+    void resolvePolicy_RouteTemplates_ShouldMatchConfiguredPatterns() {
+        // When & Then
+        assertEquals("transfer", rateLimitService.resolvePolicy("/api/cards/transfer", null));
+        assertEquals("transfer", rateLimitService.resolvePolicy("/api/cards/transfers/batch", null));
+        assertEquals("api", rateLimitService.resolvePolicy("/api/cards/{cardId}", null));
+        assertEquals("api", rateLimitService.resolvePolicy("unmatched", null));
+    }
+
+    @Test
+    void resolvePolicy_PrincipalOverride_ShouldApplyOnlyToThatUser() {
+        // When & Then
+        assertEquals("integration-transfer",
+                rateLimitService.resolvePolicy("/api/cards/transfers/batch", "integration-client"));
+        assertEquals("transfer", rateLimitService.resolvePolicy("/api/cards/transfers/batch", "testuser"));
+        // Замена задана только для transfer: остальные маршруты клиента по общим лимитам
+        assertEquals("api", rateLimitService.resolvePolicy("/api/cards/{cardId}", "integration-client"));
+    }
+
+    @Test
+    void tryAcquireRoute_SharedPolicy_ShouldUseOneBucketAcrossRoutes() {
+        // Given
+        for (int i = 0; i < 7; i++) {
+            assertTrue(rateLimitService.tryAcquireRoute("user:1", "/api/cards/transfer", "testuser", 1).allowed());
+        }
+
+        // When & Then: пакет на 3 перевода дочерпывает тот же дневной лимит
+        assertTrue(rateLimitService.tryAcquireRoute("user:1", RateLimitService.BATCH_TRANSFER_ROUTE, "testuser", 3)
+                .allowed());
+        assertFalse(rateLimitService.tryAcquireRoute("user:1", "/api/cards/transfers/async", "testuser", 1)
+                .allowed());
+        assertTrue(rateLimitService.tryAcquireRoute("user:2", "/api/cards/transfer", "other", 1).allowed());
+    }
+
+    @Test
+    void tryAcquireRoute_BatchOverRemainingLimit_ShouldRejectWithoutCharging() {
+        // Given
+        for (int i = 0; i < 8; i++) {
+            rateLimitService.tryAcquireRoute("user:1", "/api/cards/transfer", "testuser", 1);
+        }
+
+        // When
+        RateLimitStore.Decision batch =
+                rateLimitService.tryAcquireRoute("user:1", RateLimitService.BATCH_TRANSFER_ROUTE, "testuser", 3);
+
+        // Then: отказ целиком не списывает остаток, одиночные переводы еще проходят
+        assertFalse(batch.allowed());
+        assertTrue(rateLimitService.tryAcquireRoute("user:1", "/api/cards/transfer", "testuser", 1).allowed());
+    }
+
+    @Test
+    void routeCapacity_ShouldFollowPrincipalOverride() {
+        // When & Then
+        assertEquals(10, rateLimitService.routeCapacity(RateLimitService.BATCH_TRANSFER_ROUTE, "testuser"));
+        assertEquals(1000, rateLimitService.routeCapacity(RateLimitService.BATCH_TRANSFER_ROUTE, "integration-client"));
+    }
+
+    @Test
+    void tryAcquireRoute_DefaultPolicy_ShouldKeepBucketPerRoute() {
+        // Given
+        for (int i = 0; i < 100; i++) {
+            rateLimitService.tryAcquireRoute("user:1", "/api/cards/{cardId}", "testuser", 1);
+        }
+
+        // When & Then
+        assertFalse(rateLimitService.tryAcquireRoute("user:1", "/api/cards/{cardId}", "testuser", 1).allowed());
+        assertTrue(rateLimitService.tryAcquireRoute("user:1", "/api/cards", "testuser", 1).allowed());
+    }
+
+    @Test
+    void constructor_RouteWithUnknownPolicy_ShouldFailFast() {
+        // Given
+        properties.getRoutes().add(route("/api/reports/**", "reports"));
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> new RateLimitService(rateLimitStore, properties, monitoringService));
+    }
+
+    @Test
+    void publishStoreGauges_ManyKeys_ShouldStayBoundedAndCountEvictions() {
+        // Given
+        for (int i = 0; i < 50; i++) {
+            rateLimitService.tryAcquire("10.0.0." + i, "api");
+        }
+
+        // When
+        rateLimitStore.publishStoreGauges();
+
+        // Then
+        assertTrue(monitoringService.getMetric("ratelimit.store.entries") <= 2);
+        assertTrue(monitoringService.getMetric("ratelimit.store.evictions") >= 48);
+    }
+
+    private static RateLimitProperties.Policy policy(int capacity, Duration period) {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setCapacity(capacity);
+        policy.setPeriod(period);
+        return policy;
+    }
+
+    private static RateLimitProperties.Route route(String pattern, String policy) {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPattern(pattern);
+        route.setPolicy(policy);
+        return route;
+    }
+}
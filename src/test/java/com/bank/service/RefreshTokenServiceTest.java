@@ -0,0 +1,133 @@
+package com.bank.service;
+
+import com.bank.entity.RefreshToken;
+import com.bank.entity.User;
+import com.bank.exception.InvalidRefreshTokenException;
+import com.bank.repository.RefreshTokenRepository;
+import com.bank.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository, 604800000);
+    }
+
+    @Test
+    void issue_ShouldStoreHashInsteadOfToken() {
+        // When
+        String token = refreshTokenService.issue("testuser");
+
+        // Then
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        assertNotEquals(token, captor.getValue().getTokenHash());
+        assertEquals("testuser", captor.getValue().getUsername());
+        assertFalse(captor.getValue().isUsed());
+    }
+
+    @Test
+    void rotate_ValidToken_ShouldMarkUsedAndIssueTokenInSameFamily() {
+        // Given
+        RefreshToken stored = RefreshToken.builder()
+                .username("testuser")
+                .family("family-1")
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+        User user = User.builder().id(1L).username("testuser").role(User.Role.ROLE_USER).build();
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(stored));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        // When
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("old-token");
+
+        // Then
+        assertTrue(stored.isUsed());
+        assertSame(user, rotation.getUser());
+        assertNotNull(rotation.getRefreshToken());
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        assertEquals("family-1", captor.getValue().getFamily());
+    }
+
+    @Test
+    void rotate_UsedToken_ShouldRevokeFamily() {
+        // Given
+        RefreshToken stored = RefreshToken.builder()
+                .username("testuser")
+                .family("family-1")
+                .used(true)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(stored));
+
+        // When & Then
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate("reused-token"));
+        verify(refreshTokenRepository).revokeFamily("family-1");
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void revokeFamily_OwnToken_ShouldRevokeWholeFamily() {
+        // Given
+        RefreshToken stored = RefreshToken.builder()
+                .username("testuser")
+                .family("family-1")
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(stored));
+
+        // When
+        refreshTokenService.revokeFamily("login-token", "testuser");
+        refreshTokenService.revokeFamily("login-token", "otheruser");
+
+        // Then
+        verify(refreshTokenRepository, times(1)).revokeFamily("family-1");
+    }
+
+    @Test
+    void rotate_ExpiredToken_ShouldThrowInvalidRefreshTokenException() {
+        // Given
+        RefreshToken stored = RefreshToken.builder()
+                .username("testuser")
+                .family("family-1")
+                .expiresAt(LocalDateTime.now().minusMinutes(1))
+                .build();
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.of(stored));
+
+        // When & Then
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate("expired-token"));
+    }
+
+    @Test
+    void rotate_UnknownToken_ShouldThrowInvalidRefreshTokenException() {
+        // Given
+        when(refreshTokenRepository.findByTokenHashForUpdate(anyString())).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate("unknown-token"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLatencyTest {
+
+    @Test
+    void enter_NestedPhases_ShouldNotCountTimeTwice() throws Exception {
+        // Given
+        RequestLatency latency = RequestLatency.start();
+
+        // When
+        try (RequestLatency.Scope audit = RequestLatency.enter(RequestLatency.Phase.AUDIT)) {
+            try (RequestLatency.Scope write = RequestLatency.enter(RequestLatency.Phase.DB_WRITE)) {
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+            assertEquals(RequestLatency.Phase.AUDIT, RequestLatency.currentPhase());
+        }
+        RequestLatency.finish(latency);
+
+        // Then
+        long write = latency.getPhaseNanos(RequestLatency.Phase.DB_WRITE);
+        long audit = latency.getPhaseNanos(RequestLatency.Phase.AUDIT);
+        assertTrue(write >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(audit < write, "audit " + audit + " includes db.write " + write);
+        long sum = 0;
+        for (RequestLatency.Phase phase : RequestLatency.Phase.values()) {
+            sum += latency.getPhaseNanos(phase);
+        }
+        assertEquals(latency.getTotalNanos(), sum);
+        assertNull(RequestLatency.currentPhase());
+    }
+
+    @Test
+    void enter_SamePhaseTwice_ShouldKeepOuterScope() {
+        // Given
+        RequestLatency latency = RequestLatency.start();
+
+        // When
+        try (RequestLatency.Scope outer = RequestLatency.enter(RequestLatency.Phase.DB_WRITE)) {
+            try (RequestLatency.Scope inner = RequestLatency.enter(RequestLatency.Phase.DB_WRITE)) {
+                assertEquals(RequestLatency.Phase.DB_WRITE, RequestLatency.currentPhase());
+            }
+            // Then
+            assertEquals(RequestLatency.Phase.DB_WRITE, RequestLatency.currentPhase());
+        }
+        assertEquals(RequestLatency.Phase.OTHER, RequestLatency.currentPhase());
+        RequestLatency.finish(latency);
+    }
+
+    @Test
+    void enter_OutsideRequest_ShouldDoNothing() {
+        // When
+        try (RequestLatency.Scope scope = RequestLatency.enter(RequestLatency.Phase.EVENT)) {
+            // Then
+            assertNull(RequestLatency.currentPhase());
+        }
+    }
+}
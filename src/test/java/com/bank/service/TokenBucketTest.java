@@ -0,0 +1,107 @@
+package com.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void tryAcquire_FullBucket_ShouldAllowCapacityThenReject() {
+        // Given
+        TokenBucket bucket = new TokenBucket(5, Duration.ofHours(1), 0);
+
+        // When & Then
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(0));
+        }
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void tryAcquire_AfterEmissionInterval_ShouldRefillOneToken() {
+        // Given
+        TokenBucket bucket = new TokenBucket(10, Duration.ofSeconds(10), 0);
+        for (int i = 0; i < 10; i++) {
+            bucket.tryAcquire(0);
+        }
+
+        // When & Then
+        assertFalse(bucket.tryAcquire(TimeUnit.MILLISECONDS.toNanos(999)));
+        assertTrue(bucket.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+        assertFalse(bucket.tryAcquire(TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void acquire_ShouldReportRemainingResetAndRetryAfter() {
+        // Given
+        TokenBucket bucket = new TokenBucket(10, Duration.ofSeconds(10), 0);
+
+        // When
+        RateLimitStore.Decision first = bucket.acquire(0);
+        for (int i = 0; i < 9; i++) {
+            bucket.acquire(0);
+        }
+        RateLimitStore.Decision rejected = bucket.acquire(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // Then
+        assertTrue(first.allowed());
+        assertEquals(9, first.remaining());
+        assertEquals(1, first.resetSeconds());
+        assertFalse(rejected.allowed());
+        assertEquals(0, rejected.remaining());
+        // Следующий токен через 0,5 с - округляется вверх до секунды; полная корзина через 9,5 с
+        assertEquals(1, rejected.retryAfterSeconds());
+        assertEquals(10, rejected.resetSeconds());
+    }
+
+    @Test
+    void tryAcquire_IdleBucket_ShouldNotExceedCapacity() {
+        // Given
+        TokenBucket bucket = new TokenBucket(3, Duration.ofSeconds(3), 0);
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            if (bucket.tryAcquire(TimeUnit.HOURS.toNanos(1))) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(3, allowed);
+    }
+
+    @Test
+    void tryAcquire_ConcurrentCallers_ShouldNeverExceedCapacity() throws Exception {
+        // Given
+        TokenBucket bucket = new TokenBucket(100, Duration.ofDays(1));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            executor.submit(() -> {
+                start.await();
+                if (bucket.tryAcquire()) {
+                    allowed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Then
+        assertEquals(100, allowed.get());
+    }
+}
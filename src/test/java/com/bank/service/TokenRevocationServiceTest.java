@@ -0,0 +1,117 @@
+package com.bank.service;
+
+import com.bank.entity.RevokedToken;
+import com.bank.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 1000, 0.001);
+    }
+
+    @Test
+    void isRevoked_UnknownToken_ShouldNotHitRepository() {
+        // When
+        boolean revoked = tokenRevocationService.isRevoked(UUID.randomUUID().toString());
+
+        // Then
+        assertFalse(revoked);
+        verify(revokedTokenRepository, never()).existsByJti(any());
+    }
+
+    @Test
+    void isRevoked_RevokedToken_ShouldConfirmInRepository() {
+        // Given
+        String jti = UUID.randomUUID().toString();
+        tokenRevocationService.revoke(jti, "testuser", new Date(System.currentTimeMillis() + 60_000));
+        when(revokedTokenRepository.existsByJti(jti)).thenReturn(true);
+
+        // When
+        boolean revoked = tokenRevocationService.isRevoked(jti);
+
+        // Then
+        assertTrue(revoked);
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    void isRevoked_TokenWithoutJti_ShouldReturnFalse() {
+        // When & Then
+        assertFalse(tokenRevocationService.isRevoked(null));
+    }
+
+    @Test
+    void rebuild_ShouldLoadActiveRevocationsFromRepository() {
+        // Given
+        String jti = UUID.randomUUID().toString();
+        when(revokedTokenRepository.findActiveJtis(any())).thenReturn(List.of(jti));
+        when(revokedTokenRepository.existsByJti(jti)).thenReturn(true);
+
+        // When
+        tokenRevocationService.rebuild();
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked(jti));
+        verify(revokedTokenRepository).deleteExpired(any());
+    }
+
+    @Test
+    void rebuild_RevocationCommittedAfterTableRead_ShouldStayInNewFilter() {
+        // Given
+        String jti = UUID.randomUUID().toString();
+        when(revokedTokenRepository.findActiveJtis(any())).thenAnswer(invocation -> {
+            tokenRevocationService.revoke(jti, "testuser", new Date(System.currentTimeMillis() + 60_000));
+            return List.of();
+        });
+        when(revokedTokenRepository.existsByJti(jti)).thenReturn(true);
+
+        // When
+        tokenRevocationService.rebuild();
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked(jti));
+    }
+
+    @Test
+    void bloomFilter_ShouldKeepFalsePositiveRateNearConfigured() {
+        // Given
+        TokenRevocationService.BloomFilter filter = new TokenRevocationService.BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("revoked-" + i);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("active-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("revoked-" + i));
+        }
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+}